@@ -0,0 +1,98 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import ru.hogwarts.school.controller.AvatarContentWriter;
+import ru.hogwarts.school.dto.AvatarMetadata;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.StudentService;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AvatarBenchmark {
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    @Param({"4096", "262144", "4194304"})
+    public int size;
+
+    private ConfigurableApplicationContext context;
+    private AvatarService avatarService;
+    private AvatarContentWriter contentWriter;
+    private Long uploadStudentId;
+    private AvatarMetadata downloadAvatar;
+    private byte[] payload;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = SchoolContext.start(Map.of("avatar.max-size", "8MB"));
+        avatarService = context.getBean(AvatarService.class);
+        contentWriter = context.getBean(AvatarContentWriter.class);
+        StudentService studentService = context.getBean(StudentService.class);
+
+        payload = new byte[size];
+        new Random(42).nextBytes(payload);
+        System.arraycopy(PNG_SIGNATURE, 0, payload, 0, PNG_SIGNATURE.length);
+
+        uploadStudentId = studentService.add(new Student(null, "Uploader", 15)).getId();
+        Long downloadStudentId = studentService.add(new Student(null, "Downloader", 15)).getId();
+        avatarService.uploadAvatar(downloadStudentId, file(payload));
+        downloadAvatar = avatarService.findAvatar(downloadStudentId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // every upload carries new content, so it is hashed and written instead of deduplicated;
+    // replacing the student's avatar releases the previous file and keeps the disk footprint flat
+    @Benchmark
+    public void upload() throws IOException {
+        ByteBuffer.wrap(payload).putLong(PNG_SIGNATURE.length, ++sequence);
+        avatarService.uploadAvatar(uploadStudentId, file(payload));
+    }
+
+    @Benchmark
+    public MockHttpServletResponse download() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        contentWriter.write(downloadAvatar, null, AvatarContentWriter.NO_CACHE,
+                new MockHttpServletRequest("GET", "/avatar/content/" + downloadAvatar.getContentHash()), response);
+        return response;
+    }
+
+    @Benchmark
+    public AvatarMetadata findMetadata() {
+        return avatarService.findAvatar(downloadAvatar.getStudentId());
+    }
+
+    private static MockMultipartFile file(byte[] content) {
+        return new MockMultipartFile("avatar", "avatar.png", "image/png", content);
+    }
+}
@@ -0,0 +1,59 @@
+package ru.hogwarts.school.benchmark;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// key=value arguments, e.g. rate=500 duration=PT1M mix=student.get:80,avatar.content:20
+final class LoadConfig {
+    final double rate;
+    final Duration warmup;
+    final Duration duration;
+    final int maxInFlight;
+    final int faculties;
+    final int students;
+    final int avatars;
+    final long seed;
+    final Map<String, Integer> mix;
+    final Path report;
+
+    private LoadConfig(Map<String, String> args) {
+        rate = Double.parseDouble(args.getOrDefault("rate", "200"));
+        warmup = Duration.parse(args.getOrDefault("warmup", "PT10S"));
+        duration = Duration.parse(args.getOrDefault("duration", "PT30S"));
+        maxInFlight = Integer.parseInt(args.getOrDefault("maxInFlight", "1000"));
+        faculties = Integer.parseInt(args.getOrDefault("faculties", "8"));
+        students = Integer.parseInt(args.getOrDefault("students", "5000"));
+        avatars = Integer.parseInt(args.getOrDefault("avatars", "200"));
+        seed = Long.parseLong(args.getOrDefault("seed", "42"));
+        mix = parseMix(args.get("mix"));
+        report = Path.of(args.getOrDefault("report", "target/load-report"));
+    }
+
+    static LoadConfig parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int at = arg.indexOf('=');
+            if (at <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            values.put(arg.substring(0, at), arg.substring(at + 1));
+        }
+        return new LoadConfig(values);
+    }
+
+    // null keeps the default weights of every operation
+    private static Map<String, Integer> parseMix(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split(":");
+            mix.put(parts[0].trim(), parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1);
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,118 @@
+package ru.hogwarts.school.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+final class LoadReport {
+
+    // latency in microseconds, measured from the intended arrival so queueing is not hidden
+    static final class OperationStats {
+        final Histogram latency = new ConcurrentHistogram(3);
+        final LongAdder errors = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+    }
+
+    record Jvm(long gcCount, long gcMillis, long heapUsed) {
+        static Jvm now() {
+            long count = 0;
+            long millis = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, collector.getCollectionCount());
+                millis += Math.max(0, collector.getCollectionTime());
+            }
+            return new Jvm(count, millis, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        }
+
+        static void resetHeapPeak() {
+            heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+        }
+
+        static long heapPeak() {
+            return heapPools().stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        }
+
+        private static List<MemoryPoolMXBean> heapPools() {
+            return ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .toList();
+        }
+    }
+
+    private LoadReport() {
+    }
+
+    static void write(LoadConfig config, Map<String, OperationStats> stats, Jvm before, Jvm after, long heapPeak,
+                      Duration measured, ObjectMapper objectMapper) throws IOException {
+        Files.createDirectories(config.report);
+        double seconds = measured.toNanos() / 1e9;
+        Map<String, Object> operations = new LinkedHashMap<>();
+        StringBuilder summary = new StringBuilder(String.format("%-22s %8s %9s %7s %7s %7s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "req/s", "errors", "skipped", "dropped", "p50 ms", "p90 ms", "p99 ms",
+                "p99.9 ms", "max ms"));
+        for (Map.Entry<String, OperationStats> entry : stats.entrySet()) {
+            Histogram latency = entry.getValue().latency;
+            Map<String, Object> operation = new LinkedHashMap<>();
+            operation.put("count", latency.getTotalCount());
+            operation.put("throughput", latency.getTotalCount() / seconds);
+            operation.put("errors", entry.getValue().errors.sum());
+            operation.put("skipped", entry.getValue().skipped.sum());
+            operation.put("dropped", entry.getValue().dropped.sum());
+            operation.put("p50Ms", millis(latency, 50));
+            operation.put("p90Ms", millis(latency, 90));
+            operation.put("p99Ms", millis(latency, 99));
+            operation.put("p999Ms", millis(latency, 99.9));
+            operation.put("maxMs", latency.getMaxValue() / 1000.0);
+            operations.put(entry.getKey(), operation);
+            summary.append(String.format("%-22s %8d %9.1f %7d %7d %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey(), latency.getTotalCount(), latency.getTotalCount() / seconds,
+                    entry.getValue().errors.sum(), entry.getValue().skipped.sum(), entry.getValue().dropped.sum(),
+                    millis(latency, 50), millis(latency, 90), millis(latency, 99), millis(latency, 99.9),
+                    latency.getMaxValue() / 1000.0));
+            try (PrintStream out = new PrintStream(Files.newOutputStream(
+                    config.report.resolve(entry.getKey() + ".hgrm")))) {
+                latency.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+
+        Map<String, Object> jvm = new LinkedHashMap<>();
+        jvm.put("gcCount", after.gcCount() - before.gcCount());
+        jvm.put("gcTimeMs", after.gcMillis() - before.gcMillis());
+        jvm.put("heapUsedBeforeBytes", before.heapUsed());
+        jvm.put("heapUsedAfterBytes", after.heapUsed());
+        jvm.put("heapPeakBytes", heapPeak);
+        summary.append(String.format("%nGC: %d collections, %d ms; heap %d MB -> %d MB, peak %d MB%n",
+                after.gcCount() - before.gcCount(), after.gcMillis() - before.gcMillis(),
+                before.heapUsed() >> 20, after.heapUsed() >> 20, heapPeak >> 20));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("rate", config.rate);
+        report.put("durationSeconds", seconds);
+        report.put("operations", operations);
+        report.put("jvm", jvm);
+        objectMapper.writer().with(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(config.report.resolve("report.json").toFile(), report);
+        Files.writeString(config.report.resolve("summary.txt"), summary);
+        System.out.print(summary);
+    }
+
+    private static double millis(Histogram latency, double percentile) {
+        return latency.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
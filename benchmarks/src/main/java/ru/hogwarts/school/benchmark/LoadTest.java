@@ -0,0 +1,198 @@
+package ru.hogwarts.school.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.datafaker.Faker;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockMultipartFile;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentService;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load test: requests arrive as a Poisson process at the configured rate whether or not
+ * earlier ones have finished, and latency is taken from the intended arrival time.
+ * <p>
+ * mvn -B -f benchmarks/pom.xml package exec:exec@load -Dload.args="rate=500 duration=PT1M"
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config = LoadConfig.parse(args);
+        try (ConfigurableApplicationContext context = SchoolContext.start(Map.of(
+                "spring.main.web-application-type", "servlet",
+                "server.port", "0",
+                "avatar.variant.sizes", "32,64,128"))) {
+            URI base = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+            Workload workload = seed(context, config, base);
+            run(config, workload, context.getBean(ObjectMapper.class));
+        }
+    }
+
+    private static Workload seed(ConfigurableApplicationContext context, LoadConfig config, URI base)
+            throws IOException {
+        Random random = new Random(config.seed);
+        Faker faker = new Faker(random);
+
+        List<Faculty> faculties = new ArrayList<>();
+        for (int i = 0; i < config.faculties; i++) {
+            faculties.add(new Faculty(null, faker.harryPotter().house(), faker.color().name()));
+        }
+        faculties = context.getBean(FacultyService.class).addAll(faculties);
+
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < config.students; i++) {
+            Student student = new Student(null, faker.harryPotter().character(), 11 + random.nextInt(8));
+            student.setFaculty(faculties.get(random.nextInt(faculties.size())));
+            students.add(student);
+        }
+        students = context.getBean(StudentService.class).addAll(students);
+
+        AvatarService avatarService = context.getBean(AvatarService.class);
+        // leave at least one student without a seeded avatar for the upload operation
+        int avatars = Math.min(config.avatars, students.size() - 1);
+        long[] avatarStudentIds = new long[avatars];
+        String[] avatarHashes = new String[avatars];
+        List<byte[]> images = new ArrayList<>();
+        for (int i = 0; i < avatars; i++) {
+            byte[] image = png(new Color(random.nextInt(0xFFFFFF)));
+            if (images.size() < 16) {
+                images.add(image);
+            }
+            avatarStudentIds[i] = students.get(i).getId();
+            avatarService.uploadAvatar(avatarStudentIds[i],
+                    new MockMultipartFile("avatar", "avatar.png", "image/png", image));
+            avatarHashes[i] = avatarService.findAvatar(avatarStudentIds[i]).getContentHash();
+        }
+
+        List<Map<String, Object>> facultyFields = faculties.stream()
+                .map(faculty -> Map.<String, Object>of("name", faculty.getName(), "color", faculty.getColor()))
+                .toList();
+        return new Workload(base, context.getBean(ObjectMapper.class), faker, random,
+                students.stream().mapToLong(Student::getId).toArray(),
+                faculties.stream().mapToLong(Faculty::getId).toArray(), facultyFields, avatarStudentIds,
+                avatarHashes, images);
+    }
+
+    private static void run(LoadConfig config, Workload workload, ObjectMapper objectMapper) throws Exception {
+        List<Workload.Operation> operations = Workload.operations(config.mix);
+        int totalWeight = operations.stream().mapToInt(Workload.Operation::weight).sum();
+        Map<String, LoadReport.OperationStats> stats = new LinkedHashMap<>();
+        operations.forEach(operation -> stats.put(operation.name(), new LoadReport.OperationStats()));
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        Semaphore inFlight = new Semaphore(config.maxInFlight);
+        Random arrivals = new Random(config.seed);
+
+        long start = System.nanoTime();
+        long measureFrom = start + config.warmup.toNanos();
+        long end = measureFrom + config.duration.toNanos();
+        LoadReport.Jvm before = null;
+        double meanGapNanos = 1e9 / config.rate;
+        long next = start;
+        while (next < end) {
+            long now;
+            while ((now = System.nanoTime()) < next) {
+                LockSupport.parkNanos(next - now);
+            }
+            long intended = next;
+            next += (long) (-Math.log(1 - arrivals.nextDouble()) * meanGapNanos);
+            boolean measured = intended >= measureFrom;
+            if (measured && before == null) {
+                LoadReport.Jvm.resetHeapPeak();
+                before = LoadReport.Jvm.now();
+            }
+
+            Workload.Operation operation = pick(operations, totalWeight, arrivals);
+            LoadReport.OperationStats operationStats = stats.get(operation.name());
+            HttpRequest request = operation.request().apply(workload);
+            if (request == null) {
+                if (measured) {
+                    operationStats.skipped.increment();
+                }
+                continue;
+            }
+            if (!inFlight.tryAcquire()) {
+                if (measured) {
+                    operationStats.dropped.increment();
+                }
+                continue;
+            }
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                    .whenComplete((response, failure) -> {
+                        try {
+                            boolean ok = failure == null && response.statusCode() < 400;
+                            if (ok) {
+                                workload.completed(operation, response);
+                            }
+                            if (measured) {
+                                operationStats.latency.recordValue((System.nanoTime() - intended) / 1000);
+                                if (!ok) {
+                                    operationStats.errors.increment();
+                                }
+                            }
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+        }
+        if (!inFlight.tryAcquire(config.maxInFlight, 1, TimeUnit.MINUTES)) {
+            System.err.println("Some requests did not finish within a minute after the run");
+        }
+        LoadReport.Jvm after = LoadReport.Jvm.now();
+        if (before == null) {
+            before = after;
+        }
+        LoadReport.write(config, stats, before, after, LoadReport.Jvm.heapPeak(),
+                Duration.ofNanos(end - measureFrom), objectMapper);
+    }
+
+    private static Workload.Operation pick(List<Workload.Operation> operations, int totalWeight, Random random) {
+        int ticket = random.nextInt(totalWeight);
+        for (Workload.Operation operation : operations) {
+            ticket -= operation.weight();
+            if (ticket < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private static byte[] png(Color color) throws IOException {
+        BufferedImage image = new BufferedImage(160, 160, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, 160, 160);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
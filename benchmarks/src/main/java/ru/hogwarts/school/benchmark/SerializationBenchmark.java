@@ -0,0 +1,85 @@
+package ru.hogwarts.school.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"1", "100"})
+    public int students;
+
+    // configured like the mapper Spring Boot gives the controllers
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private Student student;
+    private Faculty faculty;
+    private CursorPage<Student> page;
+    private String studentJson;
+    private String pageJson;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        faculty = new Faculty(1L, "Gryffindor", "Red");
+        List<Student> roster = new ArrayList<>(students);
+        for (long id = 1; id <= students; id++) {
+            Student member = new Student(id, "Student " + id, 11 + (int) (id % 8));
+            member.setFaculty(faculty);
+            roster.add(member);
+        }
+        faculty.setStudents(roster);
+        student = roster.get(0);
+        page = CursorPage.of(roster, students, Student::getId);
+        studentJson = objectMapper.writeValueAsString(student);
+        pageJson = objectMapper.writeValueAsString(page);
+    }
+
+    @Benchmark
+    public String writeStudent() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(student);
+    }
+
+    @Benchmark
+    public Student readStudent() throws JsonProcessingException {
+        return objectMapper.readValue(studentJson, Student.class);
+    }
+
+    @Benchmark
+    public String writeFaculty() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(faculty);
+    }
+
+    @Benchmark
+    public String writeStudentPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(page);
+    }
+
+    @Benchmark
+    public CursorPage<?> readStudentPage() throws JsonProcessingException {
+        return objectMapper.readValue(pageJson, CursorPage.class);
+    }
+}
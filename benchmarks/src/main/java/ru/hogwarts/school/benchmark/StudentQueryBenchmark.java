@@ -0,0 +1,112 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StudentQueryBenchmark {
+    private static final String[] NAMES = {"Harry", "Hermione", "Ron", "Neville", "Luna", "Ginny", "Draco",
+            "Cedric", "Cho", "Seamus"};
+
+    @Param({"10000"})
+    public int students;
+
+    private ConfigurableApplicationContext context;
+    private StudentService studentService;
+    private StudentRepository studentRepository;
+    private long[] studentIds;
+    private long[] facultyIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SchoolContext.start(Map.of());
+        studentService = context.getBean(StudentService.class);
+        studentRepository = context.getBean(StudentRepository.class);
+        FacultyService facultyService = context.getBean(FacultyService.class);
+
+        List<Faculty> faculties = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            faculties.add(new Faculty(null, "Faculty " + i, "Color " + i));
+        }
+        faculties = facultyService.addAll(faculties);
+
+        Random random = new Random(42);
+        List<Student> batch = new ArrayList<>(students);
+        for (int i = 0; i < students; i++) {
+            Student student = new Student(null, NAMES[random.nextInt(NAMES.length)] + " " + i,
+                    11 + random.nextInt(8));
+            student.setFaculty(faculties.get(random.nextInt(faculties.size())));
+            batch.add(student);
+        }
+        studentIds = studentService.addAll(batch).stream().mapToLong(Student::getId).toArray();
+        facultyIds = faculties.stream().mapToLong(Faculty::getId).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Collection<Student> getByAge() {
+        return studentService.getByAge(14, 15);
+    }
+
+    @Benchmark
+    public Optional<Student> findById() {
+        return studentRepository.findById(randomStudentId());
+    }
+
+    @Benchmark
+    public Student cachedGet() {
+        return studentService.get(randomStudentId());
+    }
+
+    @Benchmark
+    public List<Student> facultyPage() {
+        long facultyId = facultyIds[ThreadLocalRandom.current().nextInt(facultyIds.length)];
+        return studentRepository.findByFacultyIdAndIdGreaterThanOrderByIdAsc(facultyId, 0L, PageRequest.of(0, 20));
+    }
+
+    @Benchmark
+    public CursorPage<Student> nameSearch() {
+        return studentService.search(NAMES[ThreadLocalRandom.current().nextInt(NAMES.length)], null, 20);
+    }
+
+    private long randomStudentId() {
+        return studentIds[ThreadLocalRandom.current().nextInt(studentIds.length)];
+    }
+}
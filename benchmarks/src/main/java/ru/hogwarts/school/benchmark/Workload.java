@@ -0,0 +1,233 @@
+package ru.hogwarts.school.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.datafaker.Faker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+// every endpoint of StudentController, FacultyController and AvatarController with a default weight
+final class Workload {
+    private static final String JSON = "application/json";
+    private static final String BOUNDARY = "school-load-boundary";
+
+    record Operation(String name, int weight, Function<Workload, HttpRequest> request,
+                     BiConsumer<Workload, JsonNode> onSuccess) {
+    }
+
+    private final URI base;
+    private final ObjectMapper objectMapper;
+    private final Faker faker;
+    private final Random random;
+    private final long[] studentIds;
+    private final long[] facultyIds;
+    private final List<Map<String, Object>> faculties;
+    private final long[] avatarStudentIds;
+    private final String[] avatarHashes;
+    private final List<byte[]> images;
+    // rows created by the load itself; updates and deletes only touch these, never the seed
+    private final ConcurrentLinkedDeque<Long> createdStudents = new ConcurrentLinkedDeque<>();
+    private final ConcurrentLinkedDeque<Long> createdFaculties = new ConcurrentLinkedDeque<>();
+
+    Workload(URI base, ObjectMapper objectMapper, Faker faker, Random random, long[] studentIds,
+             long[] facultyIds, List<Map<String, Object>> faculties, long[] avatarStudentIds,
+             String[] avatarHashes, List<byte[]> images) {
+        this.base = base;
+        this.objectMapper = objectMapper;
+        this.faker = faker;
+        this.random = random;
+        this.studentIds = studentIds;
+        this.facultyIds = facultyIds;
+        this.faculties = faculties;
+        this.avatarStudentIds = avatarStudentIds;
+        this.avatarHashes = avatarHashes;
+        this.images = images;
+    }
+
+    static List<Operation> operations(Map<String, Integer> mix) {
+        List<Operation> all = List.of(
+                new Operation("student.get", 20, w -> w.get("/student/" + w.pick(w.studentIds)), null),
+                new Operation("student.byAge", 3, w -> w.get("/student/by-age?startAge=12&endAge=13"), null),
+                new Operation("student.all", 5, w -> w.get("/student/all?limit=20&after=" + w.pick(w.studentIds)),
+                        null),
+                new Operation("student.search", 5, w -> w.get("/student/search?limit=20&q=" + w.namePart()), null),
+                new Operation("student.faculty", 5, w -> w.get("/student/faculty/" + w.pick(w.studentIds)), null),
+                new Operation("student.export", 1, w -> w.get("/student/export"), null),
+                new Operation("student.create", 3, w -> w.send("POST", "/student", w.newStudent(null)),
+                        (w, body) -> w.createdStudents.add(body.get("id").asLong())),
+                new Operation("student.createBatch", 1, w -> w.send("POST", "/student/batch", w.newStudents()),
+                        (w, body) -> body.forEach(student -> w.createdStudents.add(student.get("id").asLong()))),
+                new Operation("student.update", 2, w -> w.update(w.createdStudents, "/student", w::newStudent),
+                        null),
+                new Operation("student.updateBatch", 1, w -> w.updateBatch(w.createdStudents, "/student/batch",
+                        w::newStudent), null),
+                new Operation("student.delete", 2, w -> w.delete(w.createdStudents, "/student/"), null),
+
+                new Operation("faculty.get", 10, w -> w.get("/faculty/" + w.pick(w.facultyIds)), null),
+                new Operation("faculty.byColor", 3, w -> {
+                    Map<String, Object> faculty = w.faculties.get(w.random.nextInt(w.faculties.size()));
+                    return w.get("/faculty/by-color?name=" + encode(faculty.get("name"))
+                            + "&color=" + encode(faculty.get("color")));
+                }, null),
+                new Operation("faculty.autocomplete", 5, w -> {
+                    String name = (String) w.faculties.get(w.random.nextInt(w.faculties.size())).get("name");
+                    return w.get("/faculty/autocomplete?prefix=" + encode(name.substring(0, Math.min(2, name.length()))));
+                }, null),
+                new Operation("faculty.statistics", 2, w -> w.get("/faculty/statistics"), null),
+                new Operation("faculty.statisticsOne", 2, w -> w.get("/faculty/statistics/" + w.pick(w.facultyIds)),
+                        null),
+                new Operation("faculty.all", 2, w -> w.get("/faculty/all?limit=20"), null),
+                new Operation("faculty.students", 5, w -> w.get("/faculty/students/" + w.pick(w.facultyIds)
+                        + "?limit=20"), null),
+                new Operation("faculty.create", 1, w -> w.send("POST", "/faculty", w.newFaculty(null)),
+                        (w, body) -> w.createdFaculties.add(body.get("id").asLong())),
+                new Operation("faculty.createBatch", 1, w -> w.send("POST", "/faculty/batch",
+                        List.of(w.newFaculty(null), w.newFaculty(null))),
+                        (w, body) -> body.forEach(faculty -> w.createdFaculties.add(faculty.get("id").asLong()))),
+                new Operation("faculty.update", 1, w -> w.update(w.createdFaculties, "/faculty", w::newFaculty),
+                        null),
+                new Operation("faculty.updateBatch", 1, w -> w.updateBatch(w.createdFaculties, "/faculty/batch",
+                        w::newFaculty), null),
+                new Operation("faculty.delete", 1, w -> w.delete(w.createdFaculties, "/faculty/"), null),
+
+                new Operation("avatar.upload", 1, Workload::upload, null),
+                new Operation("avatar.fromDb", 5, w -> w.get("/avatar/" + w.pick(w.avatarStudentIds)
+                        + "/avatar-from-db"), null),
+                new Operation("avatar.fromFile", 5, w -> w.get("/avatar/" + w.pick(w.avatarStudentIds)
+                        + "/avatar-from-file?size=64"), null),
+                new Operation("avatar.content", 5, w -> w.get("/avatar/content/"
+                        + w.avatarHashes[w.random.nextInt(w.avatarHashes.length)]), null),
+                new Operation("avatar.list", 2, w -> w.get("/avatar?limit=20"), null));
+        if (mix == null) {
+            return all;
+        }
+        List<Operation> selected = new ArrayList<>();
+        for (Operation operation : all) {
+            Integer weight = mix.get(operation.name());
+            if (weight != null && weight > 0) {
+                selected.add(new Operation(operation.name(), weight, operation.request(), operation.onSuccess()));
+            }
+        }
+        if (selected.size() != mix.values().stream().filter(weight -> weight > 0).count()) {
+            throw new IllegalArgumentException("Unknown operation in mix " + mix.keySet());
+        }
+        return selected;
+    }
+
+    void completed(Operation operation, HttpResponse<byte[]> response) {
+        if (operation.onSuccess() == null) {
+            return;
+        }
+        try {
+            operation.onSuccess().accept(this, objectMapper.readTree(response.body()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).GET().build();
+    }
+
+    private HttpRequest send(String method, String path, Object body) {
+        try {
+            return HttpRequest.newBuilder(base.resolve(path))
+                    .header("Content-Type", JSON)
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // null means there is nothing to work on yet and the arrival is skipped
+    private HttpRequest update(ConcurrentLinkedDeque<Long> created, String path, Function<Long, Object> body) {
+        Long id = created.peekLast();
+        return id == null ? null : send("PUT", path, body.apply(id));
+    }
+
+    private HttpRequest updateBatch(ConcurrentLinkedDeque<Long> created, String path, Function<Long, Object> body) {
+        List<Object> batch = new ArrayList<>();
+        for (Long id : created) {
+            batch.add(body.apply(id));
+            if (batch.size() == 20) {
+                break;
+            }
+        }
+        return batch.isEmpty() ? null : send("PUT", path, batch);
+    }
+
+    private HttpRequest delete(ConcurrentLinkedDeque<Long> created, String path) {
+        Long id = created.pollFirst();
+        return id == null ? null : HttpRequest.newBuilder(base.resolve(path + id)).DELETE().build();
+    }
+
+    private HttpRequest upload() {
+        byte[] image = images.get(random.nextInt(images.size()));
+        ByteArrayOutputStream body = new ByteArrayOutputStream(image.length + 256);
+        body.writeBytes(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"avatar\"; "
+                + "filename=\"avatar.png\"\r\nContent-Type: image/png\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        body.writeBytes(image);
+        body.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        // students past the seeded avatars, so the seeded content hashes stay valid for downloads
+        long studentId = studentIds[avatarStudentIds.length + random.nextInt(studentIds.length - avatarStudentIds.length)];
+        return HttpRequest.newBuilder(base.resolve("/avatar/" + studentId + "/avatar"))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    private Map<String, Object> newStudent(Long id) {
+        Map<String, Object> student = new LinkedHashMap<>();
+        student.put("id", id);
+        student.put("name", faker.harryPotter().character());
+        student.put("age", 11 + random.nextInt(8));
+        return student;
+    }
+
+    private List<Map<String, Object>> newStudents() {
+        List<Map<String, Object>> students = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            students.add(newStudent(null));
+        }
+        return students;
+    }
+
+    private Map<String, Object> newFaculty(Long id) {
+        Map<String, Object> faculty = new LinkedHashMap<>();
+        faculty.put("id", id);
+        faculty.put("name", faker.harryPotter().house());
+        faculty.put("color", faker.color().name());
+        return faculty;
+    }
+
+    private String namePart() {
+        String name = faker.harryPotter().character().toLowerCase();
+        int from = random.nextInt(Math.max(1, name.length() - 3));
+        return encode(name.substring(from, Math.min(name.length(), from + 3)));
+    }
+
+    private long pick(long[] ids) {
+        return ids[random.nextInt(ids.length)];
+    }
+
+    private static String encode(Object value) {
+        return URLEncoder.encode(String.valueOf(value), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.hogwarts.school.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import javax.servlet.MultipartConfigElement;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class AvatarConfig {
+    private static final int VARIANT_THREADS = 2;
+    private static final int VARIANT_QUEUE_CAPACITY = 256;
+    private static final int RECLAIM_QUEUE_CAPACITY = 1024;
+    // room for the part headers and the other form fields of an upload request
+    private static final DataSize MULTIPART_OVERHEAD = DataSize.ofMegabytes(1);
+
+    // both limits follow avatar.max-size, so Tomcat stops an oversized upload while parsing it
+    @Bean
+    public MultipartConfigElement multipartConfigElement(MultipartProperties properties,
+                                                         @Value("${avatar.max-size}") DataSize maxSize) {
+        MultipartConfigElement defaults = properties.createMultipartConfig();
+        return new MultipartConfigElement(defaults.getLocation(), maxSize.toBytes(),
+                maxSize.toBytes() + MULTIPART_OVERHEAD.toBytes(), defaults.getFileSizeThreshold());
+    }
+
+    // variants are best effort: a task rejected by the full queue is dropped and the original is served
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor avatarVariantExecutor() {
+        return new ThreadPoolExecutor(VARIANT_THREADS, VARIANT_THREADS, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(VARIANT_QUEUE_CAPACITY),
+                threadFactory("avatar-variant-", true),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // deleted avatars left behind by a full queue are picked up by the periodic sweep
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor avatarReclaimExecutor() {
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(RECLAIM_QUEUE_CAPACITY),
+                threadFactory("avatar-reclaim-", true),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // a rejected upload is answered with 429, so the queue bounds the spooled files waiting on disk;
+    // the ingestion service drains it on shutdown, whatever is left stays spooled for the next start
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor avatarIngestionExecutor(@Value("${avatar.ingestion.threads}") int threads,
+                                                      @Value("${avatar.ingestion.queue-capacity}") int queueCapacity,
+                                                      MeterRegistry meterRegistry) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory("avatar-ingestion-", false),
+                new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(executor, "avatar.ingestion", Tags.empty()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    private static ThreadFactory threadFactory(String prefix, boolean daemon) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(daemon);
+            return thread;
+        };
+    }
+}
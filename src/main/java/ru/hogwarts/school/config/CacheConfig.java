@@ -0,0 +1,15 @@
+package ru.hogwarts.school.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    public static final String STUDENTS = "students";
+    public static final String FACULTIES = "faculties";
+
+    // Hibernate second-level cache regions, configured in application.conf
+    public static final String FACULTY_REGION = "faculty";
+    public static final String FACULTY_QUERY_REGION = "faculty-queries";
+}
@@ -0,0 +1,20 @@
+package ru.hogwarts.school.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+    public static final String SERVICE_TIMER = "school.service";
+    public static final String AVATAR_UPLOAD_BYTES = "avatar.upload.bytes";
+    public static final String AVATAR_DOWNLOAD_BYTES = "avatar.download.bytes";
+    public static final String AVATAR_CACHE_BYTES = "avatar.cache.bytes";
+
+    // makes @Timed on service classes record a timer per method
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+}
@@ -0,0 +1,147 @@
+package ru.hogwarts.school.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends connections of read-only transactions to a healthy replica and everything else to the primary.
+ * Must sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: the
+ * read-only flag of a transaction is only known after the transaction manager asked for a connection.
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements MeterBinder, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final DataSource primary;
+    private final List<HikariDataSource> replicas;
+    private final Set<HikariDataSource> healthy = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger next = new AtomicInteger();
+    private final long readYourWritesNanos;
+    private final AtomicLong lastWrite;
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<HikariDataSource> replicas,
+                                      Duration readYourWrites) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.readYourWritesNanos = readYourWrites.toNanos();
+        this.lastWrite = new AtomicLong(System.nanoTime() - readYourWritesNanos);
+        healthy.addAll(this.replicas);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        HikariDataSource replica = route();
+        if (replica == null) {
+            return primary.getConnection();
+        }
+        try {
+            return replica.getConnection();
+        } catch (SQLException e) {
+            down(replica, e);
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    // null means the primary
+    private HikariDataSource route() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // health probes and reads outside a transaction go to the primary without pinning anybody to it
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                wrote();
+            }
+            return null;
+        }
+        // replicas lag behind, so a client reading back what it just wrote must still see it
+        if (System.nanoTime() - lastWrite.get() < readYourWritesNanos || healthy.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < replicas.size(); i++) {
+            HikariDataSource replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+            if (healthy.contains(replica)) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private void wrote() {
+        lastWrite.set(System.nanoTime());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // the window starts once the write is visible on the primary
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    lastWrite.set(System.nanoTime());
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replica.health-check-interval}")
+    public void checkReplicas() {
+        for (HikariDataSource replica : replicas) {
+            try (Connection connection = replica.getConnection()) {
+                if (connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    if (healthy.add(replica)) {
+                        logger.info("Replica {} is back, routing reads to it again", replica.getPoolName());
+                    }
+                } else {
+                    down(replica, null);
+                }
+            } catch (SQLException e) {
+                down(replica, e);
+            }
+        }
+    }
+
+    public boolean isHealthy(String poolName) {
+        return healthy.stream().anyMatch(replica -> replica.getPoolName().equals(poolName));
+    }
+
+    private void down(HikariDataSource replica, SQLException e) {
+        if (healthy.remove(replica)) {
+            logger.warn("Replica {} is unavailable, routing its reads to the primary", replica.getPoolName(), e);
+        }
+    }
+
+    // the replica pools are no beans, so Boot's pool metrics do not see them
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (HikariDataSource replica : replicas) {
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            Gauge.builder("datasource.replica.healthy", () -> healthy.contains(replica) ? 1 : 0)
+                    .description("Whether read-only transactions are routed to the replica")
+                    .tag("pool", replica.getPoolName())
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,175 @@
+package ru.hogwarts.school.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.config.MetricsConfig;
+import ru.hogwarts.school.dto.AvatarContent;
+import ru.hogwarts.school.dto.AvatarMetadata;
+import ru.hogwarts.school.dto.AvatarVariant;
+import ru.hogwarts.school.exception.EntityNotFoundException;
+import ru.hogwarts.school.service.AvatarCacheService;
+import ru.hogwarts.school.service.AvatarVariantService;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+@Component
+public class AvatarContentWriter {
+    public static final String NO_CACHE = "no-cache";
+    public static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // below this size a sendfile call costs more than copying through the socket buffer
+    private static final long SENDFILE_THRESHOLD = 48 * 1024;
+
+    private final AvatarVariantService variantService;
+    private final AvatarCacheService cacheService;
+    private final Counter sendfileBytes;
+    private final Counter copiedBytes;
+
+    public AvatarContentWriter(AvatarVariantService variantService, AvatarCacheService cacheService,
+                               MeterRegistry meterRegistry) {
+        this.variantService = variantService;
+        this.cacheService = cacheService;
+        this.sendfileBytes = downloadedBytes(meterRegistry, "sendfile");
+        this.copiedBytes = downloadedBytes(meterRegistry, "channel");
+    }
+
+    private static Counter downloadedBytes(MeterRegistry meterRegistry, String transfer) {
+        return Counter.builder(MetricsConfig.AVATAR_DOWNLOAD_BYTES)
+                .description("Bytes of avatar content sent in response bodies")
+                .baseUnit(BaseUnits.BYTES)
+                .tag("transfer", transfer)
+                .register(meterRegistry);
+    }
+
+    public void write(AvatarMetadata avatar, Integer size, String cacheControl, HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        String hash = avatar.getContentHash();
+        Optional<AvatarVariant> variant = size == null || hash == null
+                ? Optional.empty()
+                : variantService.findVariant(hash, avatar.getMediaType(), size);
+        if (variant.isPresent()) {
+            int variantSize = variant.get().getSize();
+            write(variant.get().getContent(), variant.get().getMediaType(), "\"" + hash + "-" + variantSize + "\"",
+                    "/avatar/content/" + hash + "?size=" + variantSize, cacheControl, request, response);
+        } else if (hash != null) {
+            AvatarContent content = cacheService.find(hash).orElseThrow(EntityNotFoundException::new);
+            // a missing variant may appear later, so a size fallback must not be cached for long
+            write(content, avatar.getMediaType(), "\"" + hash + "\"", "/avatar/content/" + hash,
+                    size == null ? cacheControl : NO_CACHE, request, response);
+        } else {
+            // avatars uploaded before the blob store kept a private file per student
+            Path path = Path.of(avatar.getFilePath());
+            write(AvatarContent.ofFile(path), avatar.getMediaType(), legacyEtag(path), null,
+                    size == null ? cacheControl : NO_CACHE, request, response);
+        }
+    }
+
+    private void write(AvatarContent content, String mediaType, String etag, String contentLocation,
+                       String cacheControl, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        long length = content.getSize();
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (contentLocation != null) {
+            response.setHeader(HttpHeaders.CONTENT_LOCATION, contentLocation);
+        }
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        HttpRange range = requestedRange(request, etag);
+        if (range != null) {
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+            if (start >= length || start > end) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        } else {
+            response.setStatus(HttpStatus.OK.value());
+        }
+        long count = end - start + 1;
+        response.setContentType(mediaType);
+        response.setContentLengthLong(count);
+        if (HttpMethod.HEAD.matches(request.getMethod())) {
+            return;
+        }
+
+        Optional<Path> file = content.getFile();
+        if (file.isPresent() && count >= SENDFILE_THRESHOLD
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.get().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            sendfileBytes.increment(count);
+            return;
+        }
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        copiedBytes.increment(content.transferTo(start, count, out));
+    }
+
+    private static String legacyEtag(Path path) throws IOException {
+        long length = Files.size(path);
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(modified) + "\"";
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static HttpRange requestedRange(HttpServletRequest request, String etag) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.trim().equals(etag)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            // several ranges would need a multipart body, the whole file is a valid answer too
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -2,30 +2,35 @@ package ru.hogwarts.school.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
-import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.dto.AvatarIngestionJob;
+import ru.hogwarts.school.dto.AvatarMetadata;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.service.AvatarIngestionService;
 import ru.hogwarts.school.service.AvatarService;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.net.URI;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("avatar")
 @Tag(name= "API для работы с аватарами студентов")
 public class AvatarController {
     private final AvatarService avatarService;
+    private final AvatarIngestionService ingestionService;
+    private final AvatarContentWriter contentWriter;
 
-    public AvatarController(AvatarService avatarService) {
+    public AvatarController(AvatarService avatarService, AvatarIngestionService ingestionService,
+                            AvatarContentWriter contentWriter) {
         this.avatarService = avatarService;
+        this.ingestionService = ingestionService;
+        this.contentWriter = contentWriter;
     }
     @PostMapping(value = "/{studentId}/avatar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @Operation(summary = "Сохранение аватара")
@@ -34,29 +39,43 @@ public class AvatarController {
         avatarService.uploadAvatar(studentId, avatar);
         return ResponseEntity.ok().build();
     }
+    @PostMapping(value = "/{studentId}/avatar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, params = "async=true")
+    @Operation(summary = "Асинхронное сохранение аватара")
+    public ResponseEntity<AvatarIngestionJob> uploadAvatarAsync(@PathVariable Long studentId,
+                                                                @RequestParam MultipartFile avatar) throws IOException {
+        AvatarIngestionJob job = ingestionService.submit(studentId, avatar);
+        return ResponseEntity.accepted().location(URI.create("/avatar/jobs/" + job.getId())).body(job);
+    }
+    @GetMapping(value = "/jobs/{jobId}")
+    @Operation(summary = "Статус асинхронной загрузки аватара")
+    public ResponseEntity<AvatarIngestionJob> getIngestionJob(@PathVariable UUID jobId) {
+        return ResponseEntity.ok(ingestionService.getJob(jobId));
+    }
     @GetMapping(value = "/{id}/avatar-from-db")
     @Operation(summary = "Получение аватара из БД")
-    public ResponseEntity<byte[]> downloadAvatar(@PathVariable Long id) {
-        Avatar avatar = avatarService.findAvatar(id);
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(avatar.getMediaType()));
-        headers.setContentLength(avatar.getData().length);
-        return ResponseEntity
-                .status(HttpStatus.OK)
-                .headers(headers)
-                .body(avatar.getData());
+    public void downloadAvatar(@PathVariable Long id, @RequestParam(required = false) Integer size,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
+        AvatarMetadata avatar = avatarService.findAvatar(id);
+        contentWriter.write(avatar, size, AvatarContentWriter.NO_CACHE, request, response);
     }
     @GetMapping(value = "/{id}/avatar-from-file")
     @Operation(summary = "Получение аватара с диска")
-    public void downloadAvatar(@PathVariable Long id, HttpServletResponse response) throws IOException{
-        Avatar avatar = avatarService.findAvatar(id);
-        Path path = Path.of(avatar.getFilePath());
-        try(InputStream is = Files.newInputStream(path);
-            OutputStream os = response.getOutputStream();) {
-            response.setStatus(HttpStatus.OK.value());
-            response.setContentType(avatar.getMediaType());
-            response.setContentLength((int) avatar.getFileSize());
-            is.transferTo(os);
-        }
+    public void downloadAvatarFromFile(@PathVariable Long id, @RequestParam(required = false) Integer size,
+                                       HttpServletRequest request, HttpServletResponse response) throws IOException{
+        AvatarMetadata avatar = avatarService.findAvatar(id);
+        contentWriter.write(avatar, size, AvatarContentWriter.NO_CACHE, request, response);
+    }
+    @GetMapping(value = "/content/{hash}")
+    @Operation(summary = "Получение аватара по хэшу содержимого")
+    public void downloadAvatarContent(@PathVariable String hash, @RequestParam(required = false) Integer size,
+                                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        AvatarMetadata avatar = avatarService.findAvatarByContentHash(hash);
+        contentWriter.write(avatar, size, AvatarContentWriter.IMMUTABLE, request, response);
+    }
+    @GetMapping
+    @Operation(summary = "Получение метаданных аватаров постранично")
+    public ResponseEntity<CursorPage<AvatarMetadata>> getAll(@RequestParam(required = false) Long after,
+                                                             @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(avatarService.getAll(after, limit));
     }
 }
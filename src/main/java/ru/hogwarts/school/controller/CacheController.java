@@ -0,0 +1,43 @@
+package ru.hogwarts.school.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.hogwarts.school.dto.CacheStatistics;
+
+import java.util.Collection;
+
+@RestController
+@RequestMapping("cache")
+@Tag(name= "API для статистики кэшей")
+public class CacheController {
+    private final CacheManager cacheManager;
+
+    public CacheController(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @GetMapping("statistics")
+    @Operation(summary = "Статистика попаданий и вытеснений кэшей")
+    public ResponseEntity<Collection<CacheStatistics>> getStatistics() {
+        Collection<CacheStatistics> statistics = cacheManager.getCacheNames().stream()
+                .map(cacheManager::getCache)
+                .filter(CaffeineCache.class::isInstance)
+                .map(cache -> toStatistics(cache.getName(), ((CaffeineCache) cache).getNativeCache()))
+                .toList();
+        return ResponseEntity.ok(statistics);
+    }
+
+    private static CacheStatistics toStatistics(String name, Cache<Object, Object> cache) {
+        CacheStats stats = cache.stats();
+        return new CacheStatistics(name, cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount());
+    }
+}
@@ -0,0 +1,47 @@
+package ru.hogwarts.school.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.context.request.WebRequest;
+import ru.hogwarts.school.model.Versioned;
+
+final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    static <T extends Versioned> ResponseEntity<T> ok(T entity) {
+        String etag = etag(entity);
+        return etag == null ? ResponseEntity.ok(entity) : ResponseEntity.ok().eTag(etag).body(entity);
+    }
+
+    // a matching If-None-Match answers 304 without serializing the entity
+    static <T extends Versioned> ResponseEntity<T> ok(T entity, WebRequest request) {
+        String etag = etag(entity);
+        if (etag != null && request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ok(entity);
+    }
+
+    // If-Match needs a strong comparison, so weak or foreign tags can never match and fail the precondition
+    static Long expectedVersion(String ifMatch, Class<?> type, Long id) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.valueOf(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException ignored) {
+                // falls through to the precondition failure
+            }
+        }
+        throw new ObjectOptimisticLockingFailureException(type, id);
+    }
+
+    private static String etag(Versioned entity) {
+        return entity.getVersion() == null ? null : "\"" + entity.getVersion() + "\"";
+    }
+}
@@ -1,19 +1,28 @@
 package ru.hogwarts.school.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import ru.hogwarts.school.dto.AutocompleteMode;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultyStatistics;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.service.FacultyService;
 
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("faculty")
 @Tag(name= "API для работы с факультетами")
 public class FacultyController {
+    private static final String MERGE_PATCH_VALUE = "application/merge-patch+json";
     private final FacultyService service;
 
     public FacultyController(FacultyService service) {
@@ -24,25 +33,50 @@ public class FacultyController {
     @Operation (summary = "Создание факультетов")
     public ResponseEntity<Faculty> create(@RequestBody Faculty faculty) {
         Faculty addedFaculty = service.add(faculty);
-        return ResponseEntity.ok(addedFaculty);
+        return EntityTags.ok(addedFaculty);
+    }
+    @PostMapping("batch")
+    @Operation (summary = "Пакетное создание факультетов")
+    public ResponseEntity<List<Faculty>> createAll(@RequestBody List<Faculty> faculties) {
+        List<Faculty> addedFaculties = service.addAll(faculties);
+        return ResponseEntity.ok(addedFaculties);
     }
     @PutMapping
     @Operation (summary = "Обновление факультетов")
-    public ResponseEntity<Faculty> update (@RequestBody Faculty faculty) {
+    public ResponseEntity<Faculty> update (@RequestBody Faculty faculty,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long version = EntityTags.expectedVersion(ifMatch, Faculty.class, faculty.getId());
+        if (version != null) {
+            faculty.setVersion(version);
+        }
         Faculty updatedFaculty = service.update(faculty);
-        return ResponseEntity.ok(updatedFaculty);
+        return EntityTags.ok(updatedFaculty);
+    }
+    @PatchMapping(value = "{id}", consumes = {MERGE_PATCH_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    @Operation (summary = "Частичное обновление факультета")
+    public ResponseEntity<Faculty> patch (@PathVariable Long id, @RequestBody JsonNode patch,
+                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Faculty patchedFaculty = service.patch(id, patch, EntityTags.expectedVersion(ifMatch, Faculty.class, id));
+        return EntityTags.ok(patchedFaculty);
+    }
+    @PutMapping("batch")
+    @Operation (summary = "Пакетное обновление факультетов")
+    public ResponseEntity<List<Faculty>> updateAll(@RequestBody List<Faculty> faculties) {
+        List<Faculty> updatedFaculties = service.updateAll(faculties);
+        return ResponseEntity.ok(updatedFaculties);
     }
     @DeleteMapping("{id}")
     @Operation (summary = "Удаление факультетов")
-    public ResponseEntity <Faculty> remove (@PathVariable Long id){
-        Faculty deletedFaculty = service.remove(id);
+    public ResponseEntity <Faculty> remove (@PathVariable Long id,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        Faculty deletedFaculty = service.remove(id, EntityTags.expectedVersion(ifMatch, Faculty.class, id));
         return ResponseEntity.ok(deletedFaculty);
     }
     @GetMapping("{id}")
     @Operation (summary = "Получение факультетов по id")
-    public ResponseEntity <Faculty> get (@PathVariable Long id){
+    public ResponseEntity <Faculty> get (@PathVariable Long id, WebRequest request){
         Faculty faculty = service.get(id);
-        return ResponseEntity.ok(faculty);
+        return EntityTags.ok(faculty, request);
     }
     @GetMapping("by-color")
     @Operation (summary = "Получение факультетов по имени и цвету ")
@@ -50,16 +84,37 @@ public class FacultyController {
         Collection<Faculty> faculties= service.getByColorOrName(name,color);
         return ResponseEntity.ok(faculties);
     }
+    @GetMapping("autocomplete")
+    @Operation (summary = "Подсказки факультетов по началу имени и/или цвета")
+    public ResponseEntity <List<Faculty>> autocomplete (@RequestParam String prefix,
+                                                      @RequestParam(defaultValue = "ALL") AutocompleteMode mode,
+                                                      @RequestParam(required = false) Integer limit){
+        List<Faculty> faculties= service.autocomplete(prefix, mode, limit);
+        return ResponseEntity.ok(faculties);
+    }
+    @GetMapping("statistics")
+    @Operation (summary = "Количество студентов и распределение по возрасту для всех факультетов")
+    public ResponseEntity <List<FacultyStatistics>> getStatistics(){
+        return ResponseEntity.ok(service.getStatistics());
+    }
+    @GetMapping("statistics/{id}")
+    @Operation (summary = "Количество студентов и распределение по возрасту для факультета")
+    public ResponseEntity <FacultyStatistics> getStatistics(@PathVariable Long id){
+        return ResponseEntity.ok(service.getStatistics(id));
+    }
     @GetMapping("all")
-    @Operation (summary = "Получение всех факультетов")
-    public ResponseEntity <Collection<Faculty>> getAll(){
-        Collection<Faculty> faculties= service.getAll();
+    @Operation (summary = "Получение всех факультетов постранично")
+    public ResponseEntity <CursorPage<Faculty>> getAll(@RequestParam(required = false) Long after,
+                                                    @RequestParam(required = false) Integer limit){
+        CursorPage<Faculty> faculties= service.getAll(after, limit);
         return ResponseEntity.ok(faculties);
     }
     @GetMapping("students/{facultyId}")
     @Operation (summary = "Получение студентов факультета")
-    public ResponseEntity<Collection<Student>> getStudentsOfFaculty(@PathVariable Long facultyId){
-        Collection<Student> students= service.getStudents(facultyId);
+    public ResponseEntity<CursorPage<Student>> getStudentsOfFaculty(@PathVariable Long facultyId,
+                                                                   @RequestParam(required = false) Long after,
+                                                                   @RequestParam(required = false) Integer limit){
+        CursorPage<Student> students= service.getStudents(facultyId, after, limit);
         return ResponseEntity.ok(students);
     }
 }
@@ -1,20 +1,29 @@
 package ru.hogwarts.school.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.hogwarts.school.dto.CursorPage;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.service.StudentService;
 
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("student")
 @Tag(name= "API для работы со студентами")
 public class StudentController {
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final String MERGE_PATCH_VALUE = "application/merge-patch+json";
     private final StudentService service;
 
     public StudentController(StudentService service) {
@@ -25,25 +34,56 @@ public class StudentController {
     @Operation (summary = "Создание студентов")
     public ResponseEntity<Student> create(@RequestBody Student student) {
         Student addedStudent = service.add(student);
-        return ResponseEntity.ok(addedStudent);
+        return EntityTags.ok(addedStudent);
+    }
+    @PostMapping("batch")
+    @Operation (summary = "Пакетное создание студентов")
+    public ResponseEntity<List<Student>> createAll(@RequestBody List<Student> students) {
+        List<Student> addedStudents = service.addAll(students);
+        return ResponseEntity.ok(addedStudents);
     }
     @PutMapping
     @Operation (summary = "Обновление студентов")
-    public ResponseEntity<Student> update (@RequestBody Student student) {
+    public ResponseEntity<Student> update (@RequestBody Student student,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long version = EntityTags.expectedVersion(ifMatch, Student.class, student.getId());
+        if (version != null) {
+            student.setVersion(version);
+        }
         Student updatedStudent = service.update(student);
-        return ResponseEntity.ok(updatedStudent);
+        return EntityTags.ok(updatedStudent);
+    }
+    @PatchMapping(value = "{id}", consumes = {MERGE_PATCH_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    @Operation (summary = "Частичное обновление студента")
+    public ResponseEntity<Student> patch (@PathVariable Long id, @RequestBody JsonNode patch,
+                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Student patchedStudent = service.patch(id, patch, EntityTags.expectedVersion(ifMatch, Student.class, id));
+        return EntityTags.ok(patchedStudent);
+    }
+    @PutMapping("batch")
+    @Operation (summary = "Пакетное обновление студентов")
+    public ResponseEntity<List<Student>> updateAll(@RequestBody List<Student> students) {
+        List<Student> updatedStudents = service.updateAll(students);
+        return ResponseEntity.ok(updatedStudents);
     }
     @DeleteMapping("{id}")
     @Operation (summary = "Удаление студентов")
-    public ResponseEntity <Student> remove (@PathVariable Long id){
-        Student deletedStudent = service.remove(id);
+    public ResponseEntity <Student> remove (@PathVariable Long id,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        Student deletedStudent = service.remove(id, EntityTags.expectedVersion(ifMatch, Student.class, id));
         return ResponseEntity.ok(deletedStudent);
     }
+    @DeleteMapping
+    @Operation (summary = "Удаление нескольких студентов")
+    public ResponseEntity<List<Student>> removeAll(@RequestParam List<Long> ids){
+        List<Student> deletedStudents = service.removeAll(ids);
+        return ResponseEntity.ok(deletedStudents);
+    }
     @GetMapping("{id}")
     @Operation (summary = "Получение студентов по id")
-    public ResponseEntity <Student> get (@PathVariable Long id){
+    public ResponseEntity <Student> get (@PathVariable Long id, WebRequest request){
         Student student = service.get(id);
-        return ResponseEntity.ok(student);
+        return EntityTags.ok(student, request);
     }
     @GetMapping("by-age")
     @Operation (summary = "Получение студентов по возрасту")
@@ -53,11 +93,27 @@ public class StudentController {
         return ResponseEntity.ok(students);
     }
     @GetMapping("all")
-    @Operation (summary = "Получение всех студентов")
-    public ResponseEntity <Collection<Student>> getAll(){
-        Collection<Student> students= service.getAll();
+    @Operation (summary = "Получение всех студентов постранично")
+    public ResponseEntity <CursorPage<Student>> getAll(@RequestParam(required = false) Long after,
+                                                    @RequestParam(required = false) Integer limit){
+        CursorPage<Student> students= service.getAll(after, limit);
         return ResponseEntity.ok(students);
     }
+    @GetMapping("search")
+    @Operation (summary = "Поиск студентов по части имени")
+    public ResponseEntity <CursorPage<Student>> search(@RequestParam String q,
+                                                    @RequestParam(required = false) Long after,
+                                                    @RequestParam(required = false) Integer limit){
+        CursorPage<Student> students= service.search(q, after, limit);
+        return ResponseEntity.ok(students);
+    }
+    @GetMapping(value = "export", produces = NDJSON_VALUE)
+    @Operation (summary = "Выгрузка всех студентов в формате NDJSON")
+    public ResponseEntity<StreamingResponseBody> export(){
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+                .body(service::exportAll);
+    }
     @GetMapping("faculty/{studentId}")
     @Operation (summary = "Получение факультета студента по id")
     public ResponseEntity <Faculty> getFacultyOfStudent (@PathVariable  Long studentId){
@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+public enum AutocompleteMode {
+    NAME,
+    COLOR,
+    ALL
+}
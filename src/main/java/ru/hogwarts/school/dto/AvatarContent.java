@@ -0,0 +1,103 @@
+package ru.hogwarts.school.dto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+// stored avatar bytes, either a local file or a buffer loaded from a store or the off-heap cache
+public class AvatarContent {
+    private final Path file;
+    private final ByteBuffer buffer;
+
+    private AvatarContent(Path file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    public static AvatarContent ofFile(Path file) {
+        return new AvatarContent(file, null);
+    }
+
+    public static AvatarContent ofBytes(byte[] bytes) {
+        return new AvatarContent(null, ByteBuffer.wrap(bytes));
+    }
+
+    // the buffer is shared by every reader and must not be written to any more
+    public static AvatarContent ofBuffer(ByteBuffer buffer) {
+        return new AvatarContent(null, buffer.asReadOnlyBuffer());
+    }
+
+    // a local file can be handed to sendfile instead of being copied through the heap
+    public Optional<Path> getFile() {
+        return Optional.ofNullable(file);
+    }
+
+    public long getSize() throws IOException {
+        return file != null ? Files.size(file) : buffer.remaining();
+    }
+
+    public InputStream openStream() throws IOException {
+        return file != null ? Files.newInputStream(file) : new BufferInputStream(buffer.duplicate());
+    }
+
+    // returns the number of bytes written, which is short only if a file shrank underneath
+    public long transferTo(long position, long count, WritableByteChannel out) throws IOException {
+        if (file == null) {
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(slice.position() + (int) position);
+            slice.limit(slice.position() + (int) count);
+            while (slice.hasRemaining()) {
+                out.write(slice);
+            }
+            return count;
+        }
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (written < count) {
+                long transferred = channel.transferTo(position + written, count - written, out);
+                if (transferred <= 0) {
+                    break;
+                }
+                written += transferred;
+            }
+        }
+        return written;
+    }
+
+    private static class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.hogwarts.school.dto;
+
+import java.util.UUID;
+
+public class AvatarIngestionJob {
+    private final UUID id;
+    private final Long studentId;
+    private final AvatarIngestionStatus status;
+    private final String error;
+
+    public AvatarIngestionJob(UUID id, Long studentId, AvatarIngestionStatus status, String error) {
+        this.id = id;
+        this.studentId = studentId;
+        this.status = status;
+        this.error = error;
+    }
+
+    public AvatarIngestionJob withStatus(AvatarIngestionStatus status) {
+        return new AvatarIngestionJob(id, studentId, status, null);
+    }
+
+    public AvatarIngestionJob failed(String error) {
+        return new AvatarIngestionJob(id, studentId, AvatarIngestionStatus.FAILED, error);
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public AvatarIngestionStatus getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
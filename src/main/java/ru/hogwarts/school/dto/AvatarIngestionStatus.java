@@ -0,0 +1,8 @@
+package ru.hogwarts.school.dto;
+
+public enum AvatarIngestionStatus {
+    QUEUED,
+    RUNNING,
+    DONE,
+    FAILED
+}
@@ -0,0 +1,80 @@
+package ru.hogwarts.school.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Objects;
+
+public class AvatarMetadata {
+    private final Long id;
+    private final Long studentId;
+    private final String filePath;
+    private final long fileSize;
+    private final String mediaType;
+    private final String contentHash;
+    private final Long version;
+
+    public AvatarMetadata(Long id, Long studentId, String filePath, long fileSize, String mediaType,
+                          String contentHash, Long version) {
+        this.id = id;
+        this.studentId = studentId;
+        this.filePath = filePath;
+        this.fileSize = fileSize;
+        this.mediaType = mediaType;
+        this.contentHash = contentHash;
+        this.version = version;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    @JsonIgnore
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AvatarMetadata that = (AvatarMetadata) o;
+        return fileSize == that.fileSize && Objects.equals(id, that.id) && Objects.equals(studentId, that.studentId) && Objects.equals(filePath, that.filePath) && Objects.equals(mediaType, that.mediaType) && Objects.equals(contentHash, that.contentHash) && Objects.equals(version, that.version);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, studentId, filePath, fileSize, mediaType, contentHash, version);
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarMetadata{" +
+                "id=" + id +
+                ", studentId=" + studentId +
+                ", fileSize=" + fileSize +
+                ", mediaType='" + mediaType + '\'' +
+                ", contentHash='" + contentHash + '\'' +
+                ", version=" + version +
+                '}';
+    }
+}
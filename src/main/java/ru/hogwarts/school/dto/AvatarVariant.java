@@ -0,0 +1,25 @@
+package ru.hogwarts.school.dto;
+
+public class AvatarVariant {
+    private final AvatarContent content;
+    private final int size;
+    private final String mediaType;
+
+    public AvatarVariant(AvatarContent content, int size, String mediaType) {
+        this.content = content;
+        this.size = size;
+        this.mediaType = mediaType;
+    }
+
+    public AvatarContent getContent() {
+        return content;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+}
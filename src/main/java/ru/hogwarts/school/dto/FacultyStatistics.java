@@ -0,0 +1,34 @@
+package ru.hogwarts.school.dto;
+
+import java.util.Map;
+
+public class FacultyStatistics {
+    private final Long facultyId;
+    private final long students;
+    private final Double averageAge;
+    // age -> number of students; the last key also counts everyone older
+    private final Map<Integer, Long> ageHistogram;
+
+    public FacultyStatistics(Long facultyId, long students, Double averageAge, Map<Integer, Long> ageHistogram) {
+        this.facultyId = facultyId;
+        this.students = students;
+        this.averageAge = averageAge;
+        this.ageHistogram = ageHistogram;
+    }
+
+    public Long getFacultyId() {
+        return facultyId;
+    }
+
+    public long getStudents() {
+        return students;
+    }
+
+    public Double getAverageAge() {
+        return averageAge;
+    }
+
+    public Map<Integer, Long> getAgeHistogram() {
+        return ageHistogram;
+    }
+}
@@ -0,0 +1,25 @@
+package ru.hogwarts.school.dto;
+
+public class StudentMembership {
+    private final Long studentId;
+    private final Long facultyId;
+    private final Integer age;
+
+    public StudentMembership(Long studentId, Long facultyId, Integer age) {
+        this.studentId = studentId;
+        this.facultyId = facultyId;
+        this.age = age;
+    }
+
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public Long getFacultyId() {
+        return facultyId;
+    }
+
+    public Integer getAge() {
+        return age;
+    }
+}
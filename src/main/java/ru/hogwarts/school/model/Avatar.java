@@ -1,30 +1,32 @@
 package ru.hogwarts.school.model;
 
 import javax.persistence.*;
-import java.util.Arrays;
 import java.util.Objects;
 
 @Entity(name = "avatars")
-public class Avatar {
+public class Avatar implements Versioned {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "avatars_seq")
+    @SequenceGenerator(name = "avatars_seq", sequenceName = "avatars_seq", allocationSize = 50)
     private Long id;
     private String filePath;
     private long fileSize;
     private String mediaType;
-    private byte[] data;
-    @OneToOne
+    private String contentHash;
+    @Version
+    private Long version;
+    @OneToOne(fetch = FetchType.LAZY)
     private Student student;
 
     public Avatar() {
     }
 
-    public Avatar(Long id, String filePath, long fileSize, String mediaType, byte[] data, Student student) {
+    public Avatar(Long id, String filePath, long fileSize, String mediaType, String contentHash, Student student) {
         this.id = id;
         this.filePath = filePath;
         this.fileSize = fileSize;
         this.mediaType = mediaType;
-        this.data = data;
+        this.contentHash = contentHash;
         this.student = student;
     }
 
@@ -36,6 +38,16 @@ public class Avatar {
         this.id = id;
     }
 
+    @Override
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getFilePath() {
         return filePath;
     }
@@ -60,12 +72,12 @@ public class Avatar {
         this.mediaType = mediaType;
     }
 
-    public byte[] getData() {
-        return data;
+    public String getContentHash() {
+        return contentHash;
     }
 
-    public void setData(byte[] data) {
-        this.data = data;
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
     }
 
     public Student getStudent() {
@@ -81,14 +93,12 @@ public class Avatar {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Avatar avatar = (Avatar) o;
-        return fileSize == avatar.fileSize && Objects.equals(id, avatar.id) && Objects.equals(filePath, avatar.filePath) && Objects.equals(mediaType, avatar.mediaType) && Arrays.equals(data, avatar.data) && Objects.equals(student, avatar.student);
+        return fileSize == avatar.fileSize && Objects.equals(id, avatar.id) && Objects.equals(filePath, avatar.filePath) && Objects.equals(mediaType, avatar.mediaType) && Objects.equals(contentHash, avatar.contentHash) && Objects.equals(student, avatar.student);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(id, filePath, fileSize, mediaType, student);
-        result = 31 * result + Arrays.hashCode(data);
-        return result;
+        return Objects.hash(id, filePath, fileSize, mediaType, contentHash, student);
     }
 
     @Override
@@ -98,7 +108,7 @@ public class Avatar {
                 ", filePath='" + filePath + '\'' +
                 ", fileSize=" + fileSize +
                 ", mediaType='" + mediaType + '\'' +
-                ", data=" + Arrays.toString(data) +
+                ", contentHash='" + contentHash + '\'' +
                 ", student=" + student +
                 '}';
     }
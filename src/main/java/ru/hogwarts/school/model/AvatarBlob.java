@@ -0,0 +1,79 @@
+package ru.hogwarts.school.model;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.util.Objects;
+
+@Entity(name = "avatar_blobs")
+public class AvatarBlob {
+    @Id
+    private String hash;
+    private long size;
+    private String mediaType;
+    private int refCount;
+
+    public AvatarBlob() {
+    }
+
+    public AvatarBlob(String hash, long size, String mediaType, int refCount) {
+        this.hash = hash;
+        this.size = size;
+        this.mediaType = mediaType;
+        this.refCount = refCount;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public void setMediaType(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AvatarBlob that = (AvatarBlob) o;
+        return size == that.size && refCount == that.refCount && Objects.equals(hash, that.hash) && Objects.equals(mediaType, that.mediaType);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(hash, size, mediaType, refCount);
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarBlob{" +
+                "hash='" + hash + '\'' +
+                ", size=" + size +
+                ", mediaType='" + mediaType + '\'' +
+                ", refCount=" + refCount +
+                '}';
+    }
+}
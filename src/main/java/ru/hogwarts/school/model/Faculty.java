@@ -1,7 +1,12 @@
 package ru.hogwarts.school.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import ru.hogwarts.school.config.CacheConfig;
 
 import javax.persistence.*;
 import java.util.Collection;
@@ -9,14 +14,21 @@ import java.util.List;
 import java.util.Objects;
 
 @Entity(name = "faculties")
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfig.FACULTY_REGION)
 @JsonIgnoreProperties (value= "students")
-public class Faculty {
+public class Faculty implements Versioned {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "faculties_seq")
+    @SequenceGenerator(name = "faculties_seq", sequenceName = "faculties_seq", allocationSize = 50)
     private Long id;
     private String name;
     private String color;
-    @OneToMany(mappedBy = "faculty", fetch = FetchType.EAGER)
+    @Version
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long version;
+    @OneToMany(mappedBy = "faculty")
     @JsonManagedReference
     private List<Student> students;
 
@@ -38,6 +50,16 @@ public class Faculty {
         this.id = id;
     }
 
+    @Override
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
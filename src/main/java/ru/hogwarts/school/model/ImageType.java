@@ -0,0 +1,62 @@
+package ru.hogwarts.school.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+public enum ImageType {
+    PNG("image/png", new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}),
+    JPEG("image/jpeg", new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+    GIF87("image/gif", ascii("GIF87a")),
+    GIF89("image/gif", ascii("GIF89a")),
+    // RIFF container: 4 bytes of chunk size sit between the two markers
+    WEBP("image/webp", ascii("RIFF"), ascii("WEBP"));
+
+    private final String mediaType;
+    private final byte[] magic;
+    private final byte[] riffFormat;
+
+    ImageType(String mediaType, byte[] magic) {
+        this(mediaType, magic, null);
+    }
+
+    ImageType(String mediaType, byte[] magic, byte[] riffFormat) {
+        this.mediaType = mediaType;
+        this.magic = magic;
+        this.riffFormat = riffFormat;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    // looks at the bytes between position and limit without moving the position
+    public static Optional<ImageType> detect(ByteBuffer head) {
+        for (ImageType type : values()) {
+            if (type.matches(head)) {
+                return Optional.of(type);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private boolean matches(ByteBuffer head) {
+        return startsWith(head, 0, magic) && (riffFormat == null || startsWith(head, 8, riffFormat));
+    }
+
+    private static boolean startsWith(ByteBuffer head, int offset, byte[] expected) {
+        if (head.remaining() < offset + expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (head.get(head.position() + offset + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
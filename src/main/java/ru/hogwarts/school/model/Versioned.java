@@ -0,0 +1,9 @@
+package ru.hogwarts.school.model;
+
+public interface Versioned {
+    Long getId();
+
+    Long getVersion();
+
+    void setVersion(Long version);
+}
@@ -0,0 +1,47 @@
+package ru.hogwarts.school.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.model.AvatarBlob;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface AvatarBlobRepository extends JpaRepository<AvatarBlob, String> {
+    @Transactional
+    @Modifying
+    @Query("update avatar_blobs b set b.refCount = b.refCount + 1 where b.hash = :hash")
+    int retain(@Param("hash") String hash);
+
+    // fails on a duplicate hash, so two nodes storing the same new content cannot both count it as the first
+    @Transactional
+    @Modifying
+    @Query(value = "insert into avatar_blobs (hash, size, media_type, ref_count) values (:hash, :size, :mediaType, 1)",
+            nativeQuery = true)
+    int insert(@Param("hash") String hash, @Param("size") long size, @Param("mediaType") String mediaType);
+
+    @Transactional
+    @Modifying
+    @Query("update avatar_blobs b set b.refCount = b.refCount - 1 where b.hash = :hash and b.refCount > 0")
+    int release(@Param("hash") String hash);
+
+    // one statement for any number of students; has to run before their avatar rows are deleted
+    @Transactional
+    @Modifying
+    @Query(value = "update avatar_blobs b set ref_count = ref_count - (select count(*) from avatars a"
+            + " where a.content_hash = b.hash and a.student_id in (:studentIds))"
+            + " where b.hash in (select a.content_hash from avatars a where a.student_id in (:studentIds))",
+            nativeQuery = true)
+    int releaseAllOfStudents(@Param("studentIds") Collection<Long> studentIds);
+
+    @Transactional
+    @Modifying
+    @Query("delete from avatar_blobs b where b.hash = :hash and b.refCount = 0")
+    int deleteUnreferenced(@Param("hash") String hash);
+
+    @Query("select b.hash from avatar_blobs b where b.refCount = 0")
+    List<String> findUnreferencedHashes();
+}
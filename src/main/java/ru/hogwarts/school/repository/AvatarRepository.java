@@ -1,12 +1,27 @@
 package ru.hogwarts.school.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.hogwarts.school.dto.AvatarMetadata;
 import ru.hogwarts.school.model.Avatar;
-import ru.hogwarts.school.model.Faculty;
 
-import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface AvatarRepository extends JpaRepository<Avatar, Long> {
+public interface AvatarRepository extends JpaRepository<Avatar, Long>, AvatarRepositoryCustom {
+    String METADATA = "select new ru.hogwarts.school.dto.AvatarMetadata(a.id, a.student.id, a.filePath, a.fileSize,"
+            + " a.mediaType, a.contentHash, a.version) from avatars a ";
+
     Optional<Avatar> findByStudentId(Long studentId);
+
+    @Query(METADATA + "where a.student.id = :studentId")
+    Optional<AvatarMetadata> findMetadataByStudentId(@Param("studentId") Long studentId);
+
+    @Query(METADATA + "where a.contentHash = :contentHash order by a.id")
+    List<AvatarMetadata> findMetadataByContentHash(@Param("contentHash") String contentHash, Pageable pageable);
+
+    @Query(METADATA + "where a.id > :id order by a.id")
+    List<AvatarMetadata> findMetadataByIdGreaterThan(@Param("id") Long id, Pageable pageable);
 }
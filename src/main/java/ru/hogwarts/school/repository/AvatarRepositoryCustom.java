@@ -0,0 +1,10 @@
+package ru.hogwarts.school.repository;
+
+import ru.hogwarts.school.dto.AvatarMetadata;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface AvatarRepositoryCustom {
+    List<AvatarMetadata> deleteAllByStudentIdReturning(Collection<Long> studentIds);
+}
@@ -0,0 +1,26 @@
+package ru.hogwarts.school.repository;
+
+import org.springframework.jdbc.core.RowMapper;
+import ru.hogwarts.school.dto.AvatarMetadata;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+class AvatarRepositoryCustomImpl implements AvatarRepositoryCustom {
+    private static final RowMapper<AvatarMetadata> ROW_MAPPER = (rs, rowNum) -> new AvatarMetadata(
+            rs.getLong("id"), rs.getLong("student_id"), rs.getString("file_path"), rs.getLong("file_size"),
+            rs.getString("media_type"), rs.getString("content_hash"), rs.getLong("version"));
+
+    private final DeleteReturning deleteReturning;
+
+    AvatarRepositoryCustomImpl(DeleteReturning deleteReturning) {
+        this.deleteReturning = deleteReturning;
+    }
+
+    @Override
+    public List<AvatarMetadata> deleteAllByStudentIdReturning(Collection<Long> studentIds) {
+        return deleteReturning.delete("avatars", "student_id in (:studentIds)", Map.of("studentIds", studentIds),
+                ROW_MAPPER);
+    }
+}
@@ -0,0 +1,38 @@
+package ru.hogwarts.school.repository;
+
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.List;
+import java.util.Map;
+
+// deletes rows and reads them back in the same statement, so a delete costs one round trip
+@Component
+class DeleteReturning {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final DatabaseDriver driver;
+
+    DeleteReturning(NamedParameterJdbcTemplate jdbcTemplate, DataSource dataSource) throws MetaDataAccessException {
+        this.jdbcTemplate = jdbcTemplate;
+        this.driver = DatabaseDriver.fromProductName(
+                JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName));
+    }
+
+    <T> List<T> delete(String table, String condition, Map<String, ?> parameters, RowMapper<T> rowMapper) {
+        String delete = "delete from " + table + " where " + condition;
+        switch (driver) {
+            case POSTGRESQL:
+                return jdbcTemplate.query(delete + " returning *", parameters, rowMapper);
+            case H2:
+                return jdbcTemplate.query("select * from old table (" + delete + ")", parameters, rowMapper);
+            default:
+                throw new IllegalStateException("DELETE ... RETURNING is not supported on " + driver);
+        }
+    }
+}
@@ -1,11 +1,23 @@
 package ru.hogwarts.school.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+import ru.hogwarts.school.config.CacheConfig;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 
+import javax.persistence.QueryHint;
 import java.util.Collection;
+import java.util.List;
 
-public interface FacultyRepository extends JpaRepository<Faculty, Long> {
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
+
+public interface FacultyRepository extends JpaRepository<Faculty, Long>, FacultyRepositoryCustom {
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = CacheConfig.FACULTY_QUERY_REGION)})
     Collection<Faculty> findByNameIgnoreCaseOrColorIgnoreCase(String name, String color);
+
+    List<Faculty> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
 }
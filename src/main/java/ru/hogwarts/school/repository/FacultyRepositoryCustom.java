@@ -0,0 +1,9 @@
+package ru.hogwarts.school.repository;
+
+import ru.hogwarts.school.model.Faculty;
+
+import java.util.Optional;
+
+public interface FacultyRepositoryCustom {
+    Optional<Faculty> deleteReturning(Long id, Long version);
+}
@@ -0,0 +1,31 @@
+package ru.hogwarts.school.repository;
+
+import org.springframework.jdbc.core.RowMapper;
+import ru.hogwarts.school.model.Faculty;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+class FacultyRepositoryCustomImpl implements FacultyRepositoryCustom {
+    private static final RowMapper<Faculty> ROW_MAPPER = (rs, rowNum) -> {
+        Faculty faculty = new Faculty(rs.getLong("id"), rs.getString("name"), rs.getString("color"));
+        faculty.setVersion(rs.getLong("version"));
+        return faculty;
+    };
+
+    private final DeleteReturning deleteReturning;
+
+    FacultyRepositoryCustomImpl(DeleteReturning deleteReturning) {
+        this.deleteReturning = deleteReturning;
+    }
+
+    @Override
+    public Optional<Faculty> deleteReturning(Long id, Long version) {
+        List<Faculty> deleted = version == null
+                ? deleteReturning.delete("faculties", "id = :id", Map.of("id", id), ROW_MAPPER)
+                : deleteReturning.delete("faculties", "id = :id and version = :version",
+                Map.of("id", id, "version", version), ROW_MAPPER);
+        return deleted.stream().findFirst();
+    }
+}
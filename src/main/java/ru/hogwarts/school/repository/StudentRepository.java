@@ -1,12 +1,35 @@
 package ru.hogwarts.school.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import ru.hogwarts.school.dto.StudentMembership;
 import ru.hogwarts.school.model.Student;
 
+import javax.persistence.QueryHint;
 import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
-public interface StudentRepository extends JpaRepository<Student, Long> {
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+public interface StudentRepository extends JpaRepository<Student, Long>, StudentRepositoryCustom {
     Collection<Student> findByAgeBetween (Integer startAge, Integer endAge);
 
+    List<Student> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    List<Student> findByFacultyIdAndIdGreaterThanOrderByIdAsc(Long facultyId, Long id, Pageable pageable);
+
+    @Query("select s from students s order by s.id")
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    Stream<Student> streamAllBy();
+
+    @Query("select new ru.hogwarts.school.dto.StudentMembership(s.id, f.id, s.age) " +
+            "from students s left join s.faculty f")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    Stream<StudentMembership> streamMemberships();
+
 
 }
@@ -0,0 +1,13 @@
+package ru.hogwarts.school.repository;
+
+import ru.hogwarts.school.model.Student;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface StudentRepositoryCustom {
+    Optional<Student> deleteReturning(Long id, Long version);
+
+    List<Student> deleteAllReturning(Collection<Long> ids);
+}
@@ -0,0 +1,37 @@
+package ru.hogwarts.school.repository;
+
+import org.springframework.jdbc.core.RowMapper;
+import ru.hogwarts.school.model.Student;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+class StudentRepositoryCustomImpl implements StudentRepositoryCustom {
+    private static final RowMapper<Student> ROW_MAPPER = (rs, rowNum) -> {
+        Student student = new Student(rs.getLong("id"), rs.getString("name"), rs.getObject("age", Integer.class));
+        student.setVersion(rs.getLong("version"));
+        return student;
+    };
+
+    private final DeleteReturning deleteReturning;
+
+    StudentRepositoryCustomImpl(DeleteReturning deleteReturning) {
+        this.deleteReturning = deleteReturning;
+    }
+
+    @Override
+    public Optional<Student> deleteReturning(Long id, Long version) {
+        List<Student> deleted = version == null
+                ? deleteReturning.delete("students", "id = :id", Map.of("id", id), ROW_MAPPER)
+                : deleteReturning.delete("students", "id = :id and version = :version",
+                Map.of("id", id, "version", version), ROW_MAPPER);
+        return deleted.stream().findFirst();
+    }
+
+    @Override
+    public List<Student> deleteAllReturning(Collection<Long> ids) {
+        return deleteReturning.delete("students", "id in (:ids)", Map.of("ids", ids), ROW_MAPPER);
+    }
+}
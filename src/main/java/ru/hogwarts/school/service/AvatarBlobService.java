@@ -0,0 +1,14 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.model.AvatarBlob;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface AvatarBlobService {
+    AvatarBlob store(InputStream data, long maxSize) throws IOException;
+
+    void release(String hash) throws IOException;
+
+    void reclaim(String hash) throws IOException;
+}
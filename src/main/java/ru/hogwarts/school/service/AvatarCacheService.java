@@ -0,0 +1,12 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.AvatarContent;
+
+import java.io.IOException;
+import java.util.Optional;
+
+public interface AvatarCacheService {
+    Optional<AvatarContent> find(String key) throws IOException;
+
+    void evict(String hash);
+}
@@ -0,0 +1,13 @@
+package ru.hogwarts.school.service;
+
+import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.dto.AvatarIngestionJob;
+
+import java.io.IOException;
+import java.util.UUID;
+
+public interface AvatarIngestionService {
+    AvatarIngestionJob submit(Long studentId, MultipartFile avatar) throws IOException;
+
+    AvatarIngestionJob getJob(UUID id);
+}
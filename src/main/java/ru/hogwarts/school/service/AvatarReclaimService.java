@@ -0,0 +1,9 @@
+package ru.hogwarts.school.service;
+
+import java.util.Collection;
+
+public interface AvatarReclaimService {
+    void detachStudents(Collection<Long> studentIds);
+
+    void reclaimUnreferenced();
+}
@@ -1,11 +1,20 @@
 package ru.hogwarts.school.service;
 
 import org.springframework.web.multipart.MultipartFile;
-import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.dto.AvatarMetadata;
+import ru.hogwarts.school.dto.CursorPage;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 public interface AvatarService {
     void uploadAvatar(Long studentId, MultipartFile avatar) throws IOException;
-     Avatar findAvatar(Long studentId);
+
+    void uploadAvatar(Long studentId, InputStream data, String mediaType) throws IOException;
+
+     AvatarMetadata findAvatar(Long studentId);
+
+    AvatarMetadata findAvatarByContentHash(String hash);
+
+    CursorPage<AvatarMetadata> getAll(Long after, Integer limit);
 }
@@ -0,0 +1,24 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.AvatarContent;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Where avatar bytes live, selected by {@code avatar.storage.type}. Keys are content hashes, optionally
+ * followed by a variant suffix such as {@code -64}, so a stored key is never overwritten with other bytes.
+ */
+public interface AvatarStorage {
+    /**
+     * Takes over a fully written local file; it may be moved away, otherwise the caller deletes it.
+     */
+    void store(String key, Path content) throws IOException;
+
+    Optional<AvatarContent> find(String key) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    void delete(String key) throws IOException;
+}
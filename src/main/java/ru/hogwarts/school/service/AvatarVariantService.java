@@ -0,0 +1,14 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.AvatarVariant;
+
+import java.io.IOException;
+import java.util.Optional;
+
+public interface AvatarVariantService {
+    void scheduleVariants(String hash, String mediaType);
+
+    Optional<AvatarVariant> findVariant(String hash, String mediaType, int requestedSize) throws IOException;
+
+    void deleteVariants(String hash) throws IOException;
+}
@@ -0,0 +1,5 @@
+package ru.hogwarts.school.service;
+
+public interface FacultyCacheService {
+    void evictFaculty(Long facultyId);
+}
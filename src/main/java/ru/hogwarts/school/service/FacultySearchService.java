@@ -0,0 +1,15 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.AutocompleteMode;
+import ru.hogwarts.school.model.Faculty;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface FacultySearchService {
+    void index(Collection<Faculty> faculties);
+
+    void remove(Long id);
+
+    List<Faculty> autocomplete(String prefix, AutocompleteMode mode, Integer limit);
+}
@@ -1,23 +1,42 @@
 package ru.hogwarts.school.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import ru.hogwarts.school.dto.AutocompleteMode;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultyStatistics;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface FacultyService {
     Faculty add(Faculty faculty);
 
+    List<Faculty> addAll(List<Faculty> faculties);
+
     Faculty get(Long id);
 
     Faculty update(Faculty faculty);
 
+    Faculty patch(Long id, JsonNode patch, Long version);
+
+    List<Faculty> updateAll(List<Faculty> faculties);
+
     Faculty remove(Long id);
 
+    Faculty remove(Long id, Long version);
+
     Collection<Faculty> getByColorOrName(String name, String color);
 
-    Collection<Faculty> getAll();
+    List<Faculty> autocomplete(String prefix, AutocompleteMode mode, Integer limit);
+
+    List<FacultyStatistics> getStatistics();
+
+    FacultyStatistics getStatistics(Long id);
+
+    CursorPage<Faculty> getAll(Long after, Integer limit);
 
 
-    Collection<Student> getStudents(Long facultyId);
+    CursorPage<Student> getStudents(Long facultyId, Long after, Integer limit);
 }
@@ -0,0 +1,21 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.FacultyStatistics;
+import ru.hogwarts.school.model.Student;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface FacultyStatisticsService {
+    void record(Collection<Student> students);
+
+    void remove(Long studentId);
+
+    void removeFaculty(Long facultyId);
+
+    List<FacultyStatistics> getAll();
+
+    FacultyStatistics get(Long facultyId);
+
+    void reconcile();
+}
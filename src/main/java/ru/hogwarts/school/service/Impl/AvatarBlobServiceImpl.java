@@ -0,0 +1,191 @@
+package ru.hogwarts.school.service.Impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.exception.AvatarTooLargeException;
+import ru.hogwarts.school.exception.UnsupportedAvatarTypeException;
+import ru.hogwarts.school.model.AvatarBlob;
+import ru.hogwarts.school.model.ImageType;
+import ru.hogwarts.school.repository.AvatarBlobRepository;
+import ru.hogwarts.school.service.AvatarBlobService;
+import ru.hogwarts.school.service.AvatarCacheService;
+import ru.hogwarts.school.service.AvatarStorage;
+import ru.hogwarts.school.service.AvatarVariantService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+
+@Service
+public class AvatarBlobServiceImpl implements AvatarBlobService {
+    // a second attempt finds the row another node inserted first
+    private static final int INSERT_ATTEMPTS = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int POOLED_BUFFERS = 16;
+
+    private final AvatarBlobRepository blobRepository;
+    private final AvatarVariantService variantService;
+    private final AvatarStorage storage;
+    private final AvatarCacheService cacheService;
+    // the row lock of a blob serialises its ref count changes and stores across nodes
+    private final TransactionTemplate transactionTemplate;
+    // direct buffers are expensive to allocate, so uploads share a small pool of them
+    private final BlockingQueue<ByteBuffer> buffers = new ArrayBlockingQueue<>(POOLED_BUFFERS);
+    // uploads are written and hashed locally before the storage takes them over
+    @Value("${avatar.dir.path}")
+    private String avatarsDir;
+
+    public AvatarBlobServiceImpl(AvatarBlobRepository blobRepository, AvatarVariantService variantService,
+                                 AvatarStorage storage, AvatarCacheService cacheService,
+                                 PlatformTransactionManager transactionManager) {
+        this.blobRepository = blobRepository;
+        this.variantService = variantService;
+        this.storage = storage;
+        this.cacheService = cacheService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public AvatarBlob store(InputStream data, long maxSize) throws IOException {
+        Path dir = Path.of(avatarsDir);
+        Files.createDirectories(dir);
+        Path tempFile = Files.createTempFile(dir, "upload-", ".tmp");
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            MessageDigest digest = sha256();
+            ImageType type = null;
+            long size = 0;
+            try (ReadableByteChannel in = Channels.newChannel(data);
+                 FileChannel out = FileChannel.open(tempFile, WRITE)) {
+                boolean eof = false;
+                while (!eof) {
+                    eof = fill(in, buffer);
+                    buffer.flip();
+                    if (type == null) {
+                        type = ImageType.detect(buffer).orElseThrow(UnsupportedAvatarTypeException::new);
+                    }
+                    size += buffer.remaining();
+                    if (size > maxSize) {
+                        throw new AvatarTooLargeException();
+                    }
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            AvatarBlob blob = new AvatarBlob(hash, size, type.getMediaType(), 1);
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return inTransaction(() -> retainOrInsert(blob, tempFile));
+                } catch (DataIntegrityViolationException e) {
+                    if (attempt == INSERT_ATTEMPTS) {
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            releaseBuffer(buffer);
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @Override
+    public void release(String hash) throws IOException {
+        blobRepository.release(hash);
+        reclaim(hash);
+    }
+
+    // the content goes while the deleted row is still locked, an upload of the same bytes waits and stores them anew
+    @Override
+    public void reclaim(String hash) throws IOException {
+        boolean deleted = inTransaction(() -> {
+            if (blobRepository.deleteUnreferenced(hash) == 0) {
+                return false;
+            }
+            storage.delete(hash);
+            variantService.deleteVariants(hash);
+            return true;
+        });
+        if (deleted) {
+            cacheService.evict(hash);
+        }
+    }
+
+    // the update or insert locks the row until the content is stored, a concurrent reclaim cannot slip in between
+    private AvatarBlob retainOrInsert(AvatarBlob blob, Path content) throws IOException {
+        if (blobRepository.retain(blob.getHash()) > 0) {
+            return blobRepository.findById(blob.getHash()).orElseThrow();
+        }
+        blobRepository.insert(blob.getHash(), blob.getSize(), blob.getMediaType());
+        storage.store(blob.getHash(), content);
+        return blob;
+    }
+
+    private <T> T inTransaction(BlobWork<T> work) throws IOException {
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    return work.run();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        buffers.offer(buffer);
+    }
+
+    // reads until the buffer is full, returns true once the source is exhausted
+    private static boolean fill(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface BlobWork<T> {
+        T run() throws IOException;
+    }
+}
@@ -0,0 +1,100 @@
+package ru.hogwarts.school.service.Impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import ru.hogwarts.school.config.MetricsConfig;
+import ru.hogwarts.school.dto.AvatarContent;
+import ru.hogwarts.school.service.AvatarCacheService;
+import ru.hogwarts.school.service.AvatarStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Optional;
+
+// hot avatars stay in direct buffers, so serving them touches neither the store nor the Java heap
+@Service
+public class AvatarCacheServiceImpl implements AvatarCacheService {
+    private static final String CACHE_NAME = "avatar-contents";
+
+    private final AvatarStorage storage;
+    private final long maxEntrySize;
+    // bounded by bytes, Caffeine's frequency sketch keeps class photos over one-off lookups
+    private final Cache<String, AvatarContent> contents;
+
+    public AvatarCacheServiceImpl(AvatarStorage storage, MeterRegistry meterRegistry,
+                                  @Value("${avatar.cache.max-size}") DataSize maxSize,
+                                  @Value("${avatar.cache.max-entry-size}") DataSize maxEntrySize) {
+        this.storage = storage;
+        this.maxEntrySize = maxEntrySize.toBytes();
+        this.contents = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String key, AvatarContent content) -> (int) size(content))
+                .recordStats()
+                .build();
+        // Prometheus drops meters whose tag keys differ from the Spring caches already sharing the name
+        CaffeineCacheMetrics.monitor(meterRegistry, contents, CACHE_NAME,
+                Tags.of("cache.manager", "avatar", "name", CACHE_NAME));
+        Gauge.builder(MetricsConfig.AVATAR_CACHE_BYTES, contents,
+                        cache -> cache.policy().eviction().orElseThrow().weightedSize().orElse(0))
+                .description("Bytes of avatar content held off-heap")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Optional<AvatarContent> find(String key) throws IOException {
+        AvatarContent cached = contents.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<AvatarContent> stored = storage.find(key);
+        if (stored.isEmpty() || stored.get().getSize() > maxEntrySize) {
+            // large files are better off with sendfile than with a slot in the cache
+            return stored;
+        }
+        try {
+            return Optional.of(contents.get(key, k -> offHeap(stored.get())));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // keys are content hashes, so only a reclaimed hash and its variants can ever go stale
+    @Override
+    public void evict(String hash) {
+        contents.asMap().keySet().removeIf(key -> key.startsWith(hash));
+    }
+
+    private static AvatarContent offHeap(AvatarContent content) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) content.getSize());
+            try (ReadableByteChannel in = Channels.newChannel(content.openStream())) {
+                while (buffer.hasRemaining() && in.read(buffer) >= 0) {
+                    // keep reading until the buffer is full or the content ends early
+                }
+            }
+            return AvatarContent.ofBuffer(buffer.flip());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long size(AvatarContent content) {
+        try {
+            return content.getSize();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package ru.hogwarts.school.service.Impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.dto.AvatarIngestionJob;
+import ru.hogwarts.school.dto.AvatarIngestionStatus;
+import ru.hogwarts.school.exception.AvatarIngestionBusyException;
+import ru.hogwarts.school.exception.AvatarTooLargeException;
+import ru.hogwarts.school.exception.EntityNotFoundException;
+import ru.hogwarts.school.service.AvatarIngestionService;
+import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.StudentService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+@Service
+public class AvatarIngestionServiceImpl implements AvatarIngestionService, SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(AvatarIngestionServiceImpl.class);
+    // stops after the web server, so no upload is accepted while the queue drains
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+    private static final String PART_SUFFIX = ".part";
+
+    private final AvatarService avatarService;
+    private final StudentService studentService;
+    private final ExecutorService executor;
+    private final Path spoolDir;
+    private final DataSize maxSize;
+    private final Duration shutdownTimeout;
+    private final Cache<UUID, AvatarIngestionJob> jobs;
+    private volatile boolean running;
+    // set once the drain timed out: uploads failing from then on keep their spooled file for the next start
+    private volatile boolean abandoned;
+
+    public AvatarIngestionServiceImpl(AvatarService avatarService, StudentService studentService,
+                                      @Qualifier("avatarIngestionExecutor") ExecutorService executor,
+                                      @Value("${avatar.dir.path}") String avatarsDir,
+                                      @Value("${avatar.max-size}") DataSize maxSize,
+                                      @Value("${avatar.ingestion.job-retention}") Duration jobRetention,
+                                      @Value("${avatar.ingestion.shutdown-timeout}") Duration shutdownTimeout)
+            throws IOException {
+        this.avatarService = avatarService;
+        this.studentService = studentService;
+        this.executor = executor;
+        this.spoolDir = Path.of(avatarsDir, "spool");
+        this.maxSize = maxSize;
+        this.shutdownTimeout = shutdownTimeout;
+        this.jobs = Caffeine.newBuilder().expireAfterWrite(jobRetention).build();
+        Files.createDirectories(spoolDir);
+    }
+
+    // accepted uploads the previous run did not get to are still spooled under their job id and student
+    @Override
+    public void start() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spoolDir)) {
+            for (Path file : files) {
+                resume(file);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not resume spooled avatar uploads", e);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                abandoned = true;
+                List<Runnable> left = executor.shutdownNow();
+                logger.warn("{} accepted avatar uploads stay spooled until the next start", left.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    @Override
+    public AvatarIngestionJob submit(Long studentId, MultipartFile avatar) throws IOException {
+        if (avatar.getSize() > maxSize.toBytes()) {
+            throw new AvatarTooLargeException();
+        }
+        studentService.get(studentId);
+        AvatarIngestionJob job = new AvatarIngestionJob(UUID.randomUUID(), studentId, AvatarIngestionStatus.QUEUED,
+                null);
+        Path spooled = spoolDir.resolve(job.getId() + "_" + studentId).toAbsolutePath();
+        Path part = spooled.resolveSibling(spooled.getFileName() + PART_SUFFIX);
+        try {
+            // the container usually keeps the part in a temp file already, an absolute target lets it just move it
+            avatar.transferTo(part.toFile());
+            // only complete files carry a job name, a restart never resumes a half written one
+            Files.move(part, spooled, ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> ingest(job, spooled, avatar.getContentType()));
+        } catch (RejectedExecutionException e) {
+            jobs.invalidate(job.getId());
+            Files.deleteIfExists(spooled);
+            throw new AvatarIngestionBusyException();
+        }
+        return job;
+    }
+
+    @Override
+    public AvatarIngestionJob getJob(UUID id) {
+        AvatarIngestionJob job = jobs.getIfPresent(id);
+        if (job == null) {
+            throw new EntityNotFoundException();
+        }
+        return job;
+    }
+
+    private void resume(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        int separator = name.indexOf('_');
+        if (name.endsWith(PART_SUFFIX) || separator < 0) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        AvatarIngestionJob job = new AvatarIngestionJob(UUID.fromString(name.substring(0, separator)),
+                Long.valueOf(name.substring(separator + 1)), AvatarIngestionStatus.QUEUED, null);
+        if (jobs.asMap().putIfAbsent(job.getId(), job) != null) {
+            return;
+        }
+        try {
+            // the declared media type is gone, the blob store detects the type from the content anyway
+            executor.execute(() -> ingest(job, file, null));
+        } catch (RejectedExecutionException e) {
+            jobs.invalidate(job.getId());
+            logger.warn("Ingestion queue is full, spooled avatar {} waits for the next start", name);
+        }
+    }
+
+    private void ingest(AvatarIngestionJob job, Path spooled, String mediaType) {
+        jobs.put(job.getId(), job.withStatus(AvatarIngestionStatus.RUNNING));
+        boolean finished = true;
+        try (InputStream is = Files.newInputStream(spooled)) {
+            avatarService.uploadAvatar(job.getStudentId(), is, mediaType);
+            jobs.put(job.getId(), job.withStatus(AvatarIngestionStatus.DONE));
+        } catch (IOException | RuntimeException e) {
+            if (abandoned) {
+                // most likely the data source is already gone, the next start retries
+                finished = false;
+                logger.info("Avatar of student {} is left spooled at shutdown", job.getStudentId());
+                return;
+            }
+            logger.warn("Could not ingest avatar of student {}", job.getStudentId(), e);
+            jobs.put(job.getId(), job.failed(failureStatus(e).toString()));
+        } finally {
+            if (finished) {
+                try {
+                    Files.deleteIfExists(spooled);
+                } catch (IOException e) {
+                    logger.warn("Could not delete spooled avatar {}", spooled, e);
+                }
+            }
+        }
+    }
+
+    // the status the synchronous upload would have answered with
+    private static HttpStatus failureStatus(Exception e) {
+        ResponseStatus status = AnnotatedElementUtils.findMergedAnnotation(e.getClass(), ResponseStatus.class);
+        return status != null ? status.code() : HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+}
@@ -0,0 +1,92 @@
+package ru.hogwarts.school.service.Impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.dto.AvatarMetadata;
+import ru.hogwarts.school.repository.AvatarBlobRepository;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.service.AvatarBlobService;
+import ru.hogwarts.school.service.AvatarReclaimService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+@Service
+public class AvatarReclaimServiceImpl implements AvatarReclaimService {
+    private static final Logger logger = LoggerFactory.getLogger(AvatarReclaimServiceImpl.class);
+
+    private final AvatarRepository avatarRepository;
+    private final AvatarBlobRepository blobRepository;
+    private final AvatarBlobService blobService;
+    private final Executor executor;
+
+    public AvatarReclaimServiceImpl(AvatarRepository avatarRepository, AvatarBlobRepository blobRepository,
+                                    AvatarBlobService blobService,
+                                    @Qualifier("avatarReclaimExecutor") Executor executor) {
+        this.avatarRepository = avatarRepository;
+        this.blobRepository = blobRepository;
+        this.blobService = blobService;
+        this.executor = executor;
+    }
+
+    // joins the caller's transaction; files are only touched once it has committed
+    @Override
+    @Transactional
+    public void detachStudents(Collection<Long> studentIds) {
+        blobRepository.releaseAllOfStudents(studentIds);
+        List<AvatarMetadata> removed = avatarRepository.deleteAllByStudentIdReturning(studentIds);
+        if (!removed.isEmpty()) {
+            AfterCommit.run(() -> submit(removed));
+        }
+    }
+
+    // blobs whose reclaim was dropped or interrupted are still in the table with no references
+    @Override
+    @Scheduled(fixedDelayString = "${avatar.reclaim.interval}", initialDelayString = "${avatar.reclaim.interval}")
+    public void reclaimUnreferenced() {
+        for (String hash : blobRepository.findUnreferencedHashes()) {
+            try {
+                blobService.reclaim(hash);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not reclaim avatar blob {}", hash, e);
+            }
+        }
+    }
+
+    private void submit(List<AvatarMetadata> removed) {
+        try {
+            executor.execute(() -> reclaim(removed));
+        } catch (RejectedExecutionException e) {
+            logger.debug("Reclaim queue is full, {} avatars are left to the periodic sweep", removed.size());
+        }
+    }
+
+    private void reclaim(List<AvatarMetadata> removed) {
+        Set<String> hashes = new HashSet<>();
+        for (AvatarMetadata avatar : removed) {
+            try {
+                if (avatar.getContentHash() != null) {
+                    if (hashes.add(avatar.getContentHash())) {
+                        blobService.reclaim(avatar.getContentHash());
+                    }
+                } else if (avatar.getFilePath() != null) {
+                    // avatars uploaded before the blob store kept a private copy per student
+                    Files.deleteIfExists(Path.of(avatar.getFilePath()));
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not reclaim avatar {}", avatar.getId(), e);
+            }
+        }
+    }
+}
@@ -1,71 +1,121 @@
 package ru.hogwarts.school.service.Impl;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.config.MetricsConfig;
+import ru.hogwarts.school.dto.AvatarMetadata;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.exception.AvatarTooLargeException;
 import ru.hogwarts.school.exception.EntityNotFoundException;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarBlob;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.service.AvatarBlobService;
 import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.AvatarVariantService;
 import ru.hogwarts.school.service.StudentService;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 
-import static java.nio.file.StandardOpenOption.CREATE_NEW;
 @Service
 public class AvatarServiceImpl implements AvatarService {
     private final StudentService studentService;
     private final AvatarRepository avatarRepository;
-    @Value ("${avatar.dir.path}")
-    private  String avatarsDir;
+    private final AvatarBlobService blobService;
+    private final AvatarVariantService variantService;
+    private final Counter uploadedBytes;
+    @Value("${avatar.max-size}")
+    private DataSize maxSize;
 
-    public AvatarServiceImpl(StudentService studentService, AvatarRepository avatarRepository) {
+    public AvatarServiceImpl(StudentService studentService, AvatarRepository avatarRepository,
+                             AvatarBlobService blobService, AvatarVariantService variantService,
+                             MeterRegistry meterRegistry) {
         this.studentService = studentService;
         this.avatarRepository = avatarRepository;
+        this.blobService = blobService;
+        this.variantService = variantService;
+        this.uploadedBytes = Counter.builder(MetricsConfig.AVATAR_UPLOAD_BYTES)
+                .description("Bytes of avatar content received and stored")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
     }
 
     @Override
     public void uploadAvatar(Long studentId, MultipartFile avatarFile) throws IOException {
-        Student student = studentService.get(studentId);
-        Path filePath = buildPathFile(student, avatarFile.getOriginalFilename());
-        Files.createDirectories(filePath.getParent());
-        Files.deleteIfExists(filePath);
-        try (
-                InputStream is = avatarFile.getInputStream();
-                OutputStream os = Files.newOutputStream(filePath, CREATE_NEW);
-                BufferedInputStream bis = new BufferedInputStream(is, 1024);
-                BufferedOutputStream bos = new BufferedOutputStream(os, 1024);
-        ) {
-            bis.transferTo(bos);
+        if (avatarFile.getSize() > maxSize.toBytes()) {
+            throw new AvatarTooLargeException();
+        }
+        try (InputStream is = avatarFile.getInputStream()) {
+            uploadAvatar(studentId, is, avatarFile.getContentType());
         }
+    }
+
+    @Override
+    public void uploadAvatar(Long studentId, InputStream data, String mediaType) throws IOException {
+        Student student = studentService.get(studentId);
+        AvatarBlob blob = blobService.store(data, maxSize.toBytes());
+        uploadedBytes.increment(blob.getSize());
+        String hash = blob.getHash();
         Avatar avatar = findOrCreateAvatar(studentId);
+        String previousHash = avatar.getContentHash();
+        String previousPath = avatar.getFilePath();
         avatar.setStudent(student);
-        avatar.setFilePath(filePath.toString());
-        avatar.setFileSize(avatarFile.getSize());
-        avatar.setMediaType(avatarFile.getContentType());
-        avatar.setData(avatarFile.getBytes());
-        avatarRepository.save(avatar);
+        avatar.setContentHash(hash);
+        // the storage finds the content by its hash, only avatars from before the blob store have a path
+        avatar.setFilePath(null);
+        avatar.setFileSize(blob.getSize());
+        avatar.setMediaType(blob.getMediaType() != null ? blob.getMediaType() : mediaType);
+        try {
+            avatarRepository.save(avatar);
+        } catch (RuntimeException e) {
+            blobService.release(hash);
+            throw e;
+        }
+        variantService.scheduleVariants(hash, avatar.getMediaType());
+        if (previousHash != null) {
+            blobService.release(previousHash);
+        } else if (previousPath != null) {
+            // avatars uploaded before the blob store kept a private copy per student
+            Files.deleteIfExists(Path.of(previousPath));
+        }
     }
 
     @Override
-    public Avatar findAvatar(Long studentId) {
-        return avatarRepository.findByStudentId(studentId).orElseThrow(EntityNotFoundException::new);
-    }
-    private Avatar findOrCreateAvatar(Long studentId) {
-        return avatarRepository.findByStudentId(studentId).orElse(new Avatar());
+    @Transactional(readOnly = true)
+    public AvatarMetadata findAvatar(Long studentId) {
+        return avatarRepository.findMetadataByStudentId(studentId).orElseThrow(EntityNotFoundException::new);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public AvatarMetadata findAvatarByContentHash(String hash) {
+        return avatarRepository.findMetadataByContentHash(hash, PageRequest.of(0, 1)).stream()
+                .findFirst()
+                .orElseThrow(EntityNotFoundException::new);
+    }
 
-
-    private String getExtensions(String fileName) {
-        return fileName.substring(fileName.lastIndexOf(".") + 1);
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<AvatarMetadata> getAll(Long after, Integer limit) {
+        int pageSize = CursorPage.limit(limit);
+        List<AvatarMetadata> rows = avatarRepository.findMetadataByIdGreaterThan(CursorPage.after(after),
+                PageRequest.of(0, pageSize + 1));
+        return CursorPage.of(rows, pageSize, AvatarMetadata::getId);
     }
 
-    private Path buildPathFile (Student student, String fileName){
-        return  Path.of(avatarsDir, student.getId() +"_" + student.getName() + "." + getExtensions(fileName));
+    private Avatar findOrCreateAvatar(Long studentId) {
+        return avatarRepository.findByStudentId(studentId).orElse(new Avatar());
     }
 
 }
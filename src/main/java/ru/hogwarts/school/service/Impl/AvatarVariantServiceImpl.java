@@ -0,0 +1,209 @@
+package ru.hogwarts.school.service.Impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.dto.AvatarContent;
+import ru.hogwarts.school.dto.AvatarVariant;
+import ru.hogwarts.school.service.AvatarCacheService;
+import ru.hogwarts.school.service.AvatarStorage;
+import ru.hogwarts.school.service.AvatarVariantService;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+@Service
+public class AvatarVariantServiceImpl implements AvatarVariantService {
+    private static final Logger logger = LoggerFactory.getLogger(AvatarVariantServiceImpl.class);
+
+    private final Executor executor;
+    private final AvatarStorage storage;
+    private final AvatarCacheService cacheService;
+    private final int[] sizes;
+    private final long maxPixels;
+    // scaled images are written locally before the storage takes them over
+    private final Path scratchDir;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public AvatarVariantServiceImpl(@Qualifier("avatarVariantExecutor") Executor executor, AvatarStorage storage,
+                                    AvatarCacheService cacheService,
+                                    @Value("${avatar.variant.sizes}") int[] sizes,
+                                    @Value("${avatar.variant.max-pixels}") long maxPixels,
+                                    @Value("${avatar.dir.path}") String avatarsDir) {
+        this.executor = executor;
+        this.storage = storage;
+        this.cacheService = cacheService;
+        this.sizes = Arrays.stream(sizes).sorted().distinct().toArray();
+        this.maxPixels = maxPixels;
+        this.scratchDir = Path.of(avatarsDir);
+    }
+
+    @Override
+    public void scheduleVariants(String hash, String mediaType) {
+        String format = outputFormat(mediaType);
+        if (format == null || !inFlight.add(hash)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(hash, format);
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Could not build variants for avatar {}", hash, e);
+                } finally {
+                    inFlight.remove(hash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(hash);
+            logger.debug("Variant queue is full, avatar {} is served in full size for now", hash);
+        }
+    }
+
+    @Override
+    public Optional<AvatarVariant> findVariant(String hash, String mediaType, int requestedSize)
+            throws IOException {
+        String format = outputFormat(mediaType);
+        if (format == null) {
+            return Optional.empty();
+        }
+        int size = pickSize(requestedSize);
+        Optional<AvatarContent> variant = cacheService.find(variantKey(hash, size));
+        if (variant.isPresent()) {
+            return Optional.of(new AvatarVariant(variant.get(), size, "image/" + format));
+        }
+        scheduleVariants(hash, mediaType);
+        return Optional.empty();
+    }
+
+    @Override
+    public void deleteVariants(String hash) throws IOException {
+        for (int size : sizes) {
+            storage.delete(variantKey(hash, size));
+        }
+    }
+
+    private void generate(String hash, String format) throws IOException {
+        Optional<AvatarContent> original = storage.find(hash);
+        if (original.isEmpty()) {
+            return;
+        }
+        BufferedImage source = decode(hash, original.get());
+        if (source == null) {
+            return;
+        }
+        Files.createDirectories(scratchDir);
+        for (int size : sizes) {
+            String key = variantKey(hash, size);
+            if (storage.exists(key)) {
+                continue;
+            }
+            BufferedImage scaled = scale(source, size, format.equals("jpeg"));
+            Path tempFile = Files.createTempFile(scratchDir, "variant-", ".tmp");
+            try {
+                if (!ImageIO.write(scaled, format, tempFile.toFile())) {
+                    return;
+                }
+                storage.store(key, tempFile);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+        // the blob may have been released while we were scaling it
+        if (!storage.exists(hash)) {
+            deleteVariants(hash);
+        }
+    }
+
+    // a few kilobytes of PNG can declare a picture that takes gigabytes once decoded
+    private BufferedImage decode(String hash, AvatarContent content) throws IOException {
+        try (InputStream in = content.openStream();
+             ImageInputStream images = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(images);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(images, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    logger.warn("Avatar {} has {} pixels, variants are only built up to {}", hash, pixels, maxPixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // the smallest variant that still covers the requested size, or the largest one
+    private int pickSize(int requestedSize) {
+        for (int size : sizes) {
+            if (size >= requestedSize) {
+                return size;
+            }
+        }
+        return sizes[sizes.length - 1];
+    }
+
+    private static String variantKey(String hash, int size) {
+        return hash + "-" + size;
+    }
+
+    private static String outputFormat(String mediaType) {
+        if (mediaType == null) {
+            return null;
+        }
+        switch (mediaType) {
+            case "image/jpeg":
+                return "jpeg";
+            case "image/png":
+            case "image/gif":
+                return "png";
+            default:
+                return null;
+        }
+    }
+
+    // never upscales; halves the image step by step so bilinear filtering keeps the detail
+    private static BufferedImage scale(BufferedImage source, int size, boolean opaque) {
+        double ratio = Math.min(1.0, (double) size / Math.max(source.getWidth(), source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, type);
+            Graphics2D graphics = next.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(current, 0, 0, width, height, null);
+            graphics.dispose();
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+}
@@ -0,0 +1,51 @@
+package ru.hogwarts.school.service.Impl;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.hogwarts.school.exception.EntityNotFoundException;
+import ru.hogwarts.school.model.Versioned;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+final class BatchWriter {
+
+    private BatchWriter() {
+    }
+
+    // saves chunk by chunk so that every flush becomes one JDBC batch per table and the
+    // persistence context never holds more than one chunk
+    static <T extends Versioned> List<T> saveAll(JpaRepository<T, Long> repository, EntityManager entityManager,
+                                                 List<T> entities, int batchSize) {
+        List<T> saved = new ArrayList<>(entities.size());
+        for (int from = 0; from < entities.size(); from += batchSize) {
+            List<T> chunk = entities.subList(from, Math.min(from + batchSize, entities.size()));
+            List<Long> ids = chunk.stream().map(Versioned::getId).filter(Objects::nonNull).collect(Collectors.toList());
+            if (!ids.isEmpty()) {
+                // one select for the whole chunk instead of one per merge
+                Map<Long, Long> versions = new HashMap<>();
+                repository.findAllById(ids).forEach(entity -> versions.put(entity.getId(), entity.getVersion()));
+                chunk.forEach(entity -> fillVersion(entity, versions));
+            }
+            saved.addAll(repository.saveAll(chunk));
+            entityManager.flush();
+            entityManager.clear();
+        }
+        return saved;
+    }
+
+    // a client that sends no version overwrites the stored row, as it did before rows were versioned
+    static <T extends Versioned> void fillVersion(T entity, Map<Long, Long> versions) {
+        if (entity.getId() == null || entity.getVersion() != null) {
+            return;
+        }
+        if (!versions.containsKey(entity.getId())) {
+            throw new EntityNotFoundException();
+        }
+        entity.setVersion(versions.get(entity.getId()));
+    }
+}
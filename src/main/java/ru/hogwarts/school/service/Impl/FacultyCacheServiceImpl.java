@@ -0,0 +1,29 @@
+package ru.hogwarts.school.service.Impl;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.config.CacheConfig;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.service.FacultyCacheService;
+
+import javax.persistence.EntityManagerFactory;
+
+// the JDBC deletes bypass Hibernate, so they have to drop what the second-level cache holds themselves
+@Service
+public class FacultyCacheServiceImpl implements FacultyCacheService {
+    private final Cache cache;
+
+    public FacultyCacheServiceImpl(EntityManagerFactory entityManagerFactory) {
+        this.cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    // after commit, so a concurrent reader cannot put the old row back in between
+    @Override
+    public void evictFaculty(Long facultyId) {
+        AfterCommit.run(() -> {
+            cache.evictEntityData(Faculty.class, facultyId);
+            cache.evictQueryRegion(CacheConfig.FACULTY_QUERY_REGION);
+        });
+    }
+}
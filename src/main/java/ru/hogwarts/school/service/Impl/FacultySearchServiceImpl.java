@@ -0,0 +1,140 @@
+package ru.hogwarts.school.service.Impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.dto.AutocompleteMode;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.service.FacultySearchService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+@Service
+public class FacultySearchServiceImpl implements FacultySearchService {
+    private static final Logger logger = LoggerFactory.getLogger(FacultySearchServiceImpl.class);
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 50;
+
+    private final FacultyRepository facultyRepository;
+
+    // writers rebuild and swap these; readers only ever see a complete snapshot
+    private final Map<Long, Faculty> faculties = new HashMap<>();
+    private volatile Entry[] names = new Entry[0];
+    private volatile Entry[] colors = new Entry[0];
+
+    public FacultySearchServiceImpl(FacultyRepository facultyRepository) {
+        this.facultyRepository = facultyRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    // not read-only: findAll's own read-only transaction would build the index from a lagging replica
+    @Transactional
+    public synchronized void rebuild() {
+        faculties.clear();
+        facultyRepository.findAll().forEach(faculty -> faculties.put(faculty.getId(), snapshot(faculty)));
+        publish();
+        logger.info("Indexed {} faculties for autocomplete", faculties.size());
+    }
+
+    @Override
+    public void index(Collection<Faculty> faculties) {
+        List<Faculty> snapshots = faculties.stream().map(FacultySearchServiceImpl::snapshot).toList();
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                snapshots.forEach(faculty -> this.faculties.put(faculty.getId(), faculty));
+                publish();
+            }
+        });
+    }
+
+    @Override
+    public void remove(Long id) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                if (faculties.remove(id) != null) {
+                    publish();
+                }
+            }
+        });
+    }
+
+    @Override
+    public List<Faculty> autocomplete(String prefix, AutocompleteMode mode, Integer limit) {
+        String key = fold(prefix);
+        int max = limit == null ? DEFAULT_LIMIT : Math.max(1, Math.min(limit, MAX_LIMIT));
+        Map<Long, Faculty> found = new LinkedHashMap<>();
+        if (mode != AutocompleteMode.COLOR) {
+            collect(names, key, max, found);
+        }
+        if (mode != AutocompleteMode.NAME) {
+            collect(colors, key, max, found);
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    private static void collect(Entry[] entries, String prefix, int max, Map<Long, Faculty> found) {
+        for (int i = lowerBound(entries, prefix); i < entries.length && found.size() < max; i++) {
+            if (!entries[i].key.startsWith(prefix)) {
+                break;
+            }
+            found.putIfAbsent(entries[i].faculty.getId(), entries[i].faculty);
+        }
+    }
+
+    // first index whose key is >= prefix; every key starting with prefix follows it contiguously
+    private static int lowerBound(Entry[] entries, String prefix) {
+        int low = 0;
+        int high = entries.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries[mid].key.compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void publish() {
+        names = sorted(Faculty::getName);
+        colors = sorted(Faculty::getColor);
+    }
+
+    private Entry[] sorted(Function<Faculty, String> field) {
+        Entry[] entries = faculties.values().stream()
+                .filter(faculty -> field.apply(faculty) != null)
+                .map(faculty -> new Entry(fold(field.apply(faculty)), faculty))
+                .toArray(Entry[]::new);
+        Arrays.sort(entries, Entry.ORDER);
+        return entries;
+    }
+
+    private static Faculty snapshot(Faculty faculty) {
+        Faculty copy = new Faculty(faculty.getId(), faculty.getName(), faculty.getColor());
+        copy.setVersion(faculty.getVersion());
+        return copy;
+    }
+
+    private static String fold(String value) {
+        return value == null ? "" : value.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+    }
+
+    private record Entry(String key, Faculty faculty) {
+        static final Comparator<Entry> ORDER = Comparator.comparing(Entry::key)
+                .thenComparing(entry -> entry.faculty().getId());
+    }
+}
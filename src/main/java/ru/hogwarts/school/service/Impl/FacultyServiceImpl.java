@@ -1,64 +1,199 @@
 package ru.hogwarts.school.service.Impl;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.config.CacheConfig;
+import ru.hogwarts.school.config.MetricsConfig;
+import ru.hogwarts.school.dto.AutocompleteMode;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultyStatistics;
 import ru.hogwarts.school.exception.EntityNotFoundException;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.FacultyCacheService;
+import ru.hogwarts.school.service.FacultySearchService;
 import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.FacultyStatisticsService;
 
+import javax.persistence.EntityManager;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 @Service
+@Timed(MetricsConfig.SERVICE_TIMER)
 public class FacultyServiceImpl implements FacultyService {
-    private final FacultyRepository facultyRepository;
+    // students are not part of the faculty's JSON, so a patch cannot move them
+    private static final Set<String> PATCHABLE = Set.of("name", "color");
 
-    public FacultyServiceImpl(FacultyRepository facultyRepository) {
+    private final FacultyRepository facultyRepository;
+    private final StudentRepository studentRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final FacultySearchService searchService;
+    private final FacultyStatisticsService statisticsService;
+    private final FacultyCacheService cacheService;
+    private final int batchSize;
+
+    public FacultyServiceImpl(FacultyRepository facultyRepository, StudentRepository studentRepository,
+                              EntityManager entityManager, ObjectMapper objectMapper,
+                              FacultySearchService searchService,
+                              FacultyStatisticsService statisticsService, FacultyCacheService cacheService,
+                              @Value("${spring.jpa.properties.hibernate.jdbc.batch_size}") int batchSize) {
         this.facultyRepository = facultyRepository;
+        this.studentRepository = studentRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.searchService = searchService;
+        this.statisticsService = statisticsService;
+        this.cacheService = cacheService;
+        this.batchSize = batchSize;
     }
 
     @Override
+    @CachePut(cacheNames = CacheConfig.FACULTIES, key = "#result.id")
     public Faculty add(Faculty faculty) {
-       return facultyRepository.save(faculty);
+        Faculty saved = facultyRepository.save(faculty);
+        searchService.index(List.of(saved));
+        return saved;
     }
 
     @Override
+    @Transactional
+    public List<Faculty> addAll(List<Faculty> faculties) {
+        faculties.forEach(faculty -> faculty.setId(null));
+        List<Faculty> saved = BatchWriter.saveAll(facultyRepository, entityManager, faculties, batchSize);
+        searchService.index(saved);
+        return saved;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.FACULTIES, key = "#id")
     public Faculty get(Long id) {
         return facultyRepository.findById(id).orElseThrow(EntityNotFoundException::new);
 
     }
 
     @Override
+    @Transactional
+    @CachePut(cacheNames = CacheConfig.FACULTIES, key = "#result.id")
     public Faculty update(Faculty faculty) {
-        return facultyRepository.save(faculty);
+        // a PUT without an id has always created the faculty
+        if (faculty.getId() == null) {
+            return add(faculty);
+        }
+        Faculty current = facultyRepository.findById(faculty.getId()).orElseThrow(EntityNotFoundException::new);
+        if (faculty.getVersion() == null) {
+            faculty.setVersion(current.getVersion());
+        }
+        Faculty saved = facultyRepository.save(faculty);
+        // the merge bumps the version only on flush; the search snapshot and the ETag must carry the same one
+        facultyRepository.flush();
+        searchService.index(List.of(saved));
+        return saved;
 
 
     }
 
     @Override
+    @Transactional
+    @CachePut(cacheNames = CacheConfig.FACULTIES, key = "#result.id")
+    public Faculty patch(Long id, JsonNode patch, Long version) {
+        Faculty faculty = facultyRepository.findById(id).orElseThrow(EntityNotFoundException::new);
+        MergePatch.apply(objectMapper, faculty, patch, version, PATCHABLE);
+        // flushing here bumps the version before the search index copies the entity
+        facultyRepository.flush();
+        searchService.index(List.of(faculty));
+        return faculty;
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.FACULTIES, allEntries = true)
+    public List<Faculty> updateAll(List<Faculty> faculties) {
+        List<Faculty> saved = BatchWriter.saveAll(facultyRepository, entityManager, faculties, batchSize);
+        searchService.index(saved);
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.FACULTIES, key = "#id")
     public Faculty remove(Long id) {
-        Faculty faculty = get(id);
-        facultyRepository.deleteById(id);
+        return remove(id, null);
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.FACULTIES, key = "#id")
+    public Faculty remove(Long id, Long version) {
+        Faculty faculty = facultyRepository.deleteReturning(id, version)
+                .orElseThrow(() -> missingOrStale(id, version));
+        cacheService.evictFaculty(id);
+        searchService.remove(id);
+        statisticsService.removeFaculty(id);
         return faculty;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Collection<Faculty> getByColorOrName(String name, String color) {
         return facultyRepository.findByNameIgnoreCaseOrColorIgnoreCase(name, color);
     }
 
 
     @Override
-    public Collection<Faculty> getAll() {
-        return facultyRepository.findAll();
+    public List<Faculty> autocomplete(String prefix, AutocompleteMode mode, Integer limit) {
+        return searchService.autocomplete(prefix, mode, limit);
     }
 
     @Override
-    public Collection<Student> getStudents(Long facultyId) {
-        return get(facultyId).getStudents();
+    public List<FacultyStatistics> getStatistics() {
+        return statisticsService.getAll();
     }
 
+    @Override
+    public FacultyStatistics getStatistics(Long id) {
+        return statisticsService.get(id);
+    }
 
-}
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<Faculty> getAll(Long after, Integer limit) {
+        int pageSize = CursorPage.limit(limit);
+        List<Faculty> rows = facultyRepository.findByIdGreaterThanOrderByIdAsc(CursorPage.after(after),
+                PageRequest.of(0, pageSize + 1));
+        return CursorPage.of(rows, pageSize, Faculty::getId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<Student> getStudents(Long facultyId, Long after, Integer limit) {
+        if (!facultyRepository.existsById(facultyId)) {
+            throw new EntityNotFoundException();
+        }
+        int pageSize = CursorPage.limit(limit);
+        List<Student> rows = studentRepository.findByFacultyIdAndIdGreaterThanOrderByIdAsc(facultyId,
+                CursorPage.after(after), PageRequest.of(0, pageSize + 1));
+        return CursorPage.of(rows, pageSize, Student::getId);
+    }
 
+    // nothing was deleted: the row is either gone or carries another version
+    private RuntimeException missingOrStale(Long id, Long version) {
+        return version != null && facultyRepository.existsById(id)
+                ? new ObjectOptimisticLockingFailureException(Faculty.class, id)
+                : new EntityNotFoundException();
+    }
+}
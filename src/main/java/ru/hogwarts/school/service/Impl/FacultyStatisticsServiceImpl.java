@@ -0,0 +1,232 @@
+package ru.hogwarts.school.service.Impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.dto.FacultyStatistics;
+import ru.hogwarts.school.dto.StudentMembership;
+import ru.hogwarts.school.exception.EntityNotFoundException;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.FacultyStatisticsService;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+@Service
+public class FacultyStatisticsServiceImpl implements FacultyStatisticsService {
+    private static final Logger logger = LoggerFactory.getLogger(FacultyStatisticsServiceImpl.class);
+    // ages 0..MAX_AGE-1 get their own bucket, MAX_AGE collects everyone older
+    private static final int MAX_AGE = 100;
+
+    private final StudentRepository studentRepository;
+    private final FacultyRepository facultyRepository;
+
+    // shared by student changes, exclusive while a reconcile starts its journal and swaps in its result
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Map<Long, Membership> memberships = new ConcurrentHashMap<>();
+    private volatile Map<Long, Counters> counters = new ConcurrentHashMap<>();
+    // students changed while a reconcile scans the table; their live state is newer than what it read
+    private volatile Set<Long> touched;
+
+    public FacultyStatisticsServiceImpl(StudentRepository studentRepository, FacultyRepository facultyRepository) {
+        this.studentRepository = studentRepository;
+        this.facultyRepository = facultyRepository;
+    }
+
+    @Override
+    public void record(Collection<Student> students) {
+        List<StudentMembership> changes = students.stream()
+                .map(student -> new StudentMembership(student.getId(),
+                        student.getFaculty() == null ? null : student.getFaculty().getId(), student.getAge()))
+                .toList();
+        AfterCommit.run(() -> apply(changes));
+    }
+
+    @Override
+    public void remove(Long studentId) {
+        AfterCommit.run(() -> {
+            lock.readLock().lock();
+            try {
+                journal(studentId);
+                memberships.computeIfPresent(studentId, (id, previous) -> {
+                    move(counters, previous, null);
+                    return null;
+                });
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    // the foreign key only lets a faculty without students go, so its counters are empty and can be dropped
+    @Override
+    public void removeFaculty(Long facultyId) {
+        AfterCommit.run(() -> {
+            lock.readLock().lock();
+            try {
+                counters.remove(facultyId);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public List<FacultyStatistics> getAll() {
+        return counters.entrySet().stream()
+                .map(entry -> entry.getValue().toStatistics(entry.getKey()))
+                .filter(statistics -> statistics.getStudents() > 0)
+                .sorted(Comparator.comparing(FacultyStatistics::getFacultyId))
+                .toList();
+    }
+
+    @Override
+    public FacultyStatistics get(Long facultyId) {
+        Counters faculty = counters.get(facultyId);
+        FacultyStatistics statistics = faculty == null ? null : faculty.toStatistics(facultyId);
+        if (statistics != null && statistics.getStudents() > 0) {
+            return statistics;
+        }
+        // no counters only means no students, the faculty itself may well exist
+        if (!facultyRepository.existsById(facultyId)) {
+            throw new EntityNotFoundException();
+        }
+        return new FacultyStatistics(facultyId, 0, null, Map.of());
+    }
+
+    // rebuilds the counters from the table; catches writes that bypassed StudentService
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${faculty.statistics.reconcile-interval}",
+            initialDelayString = "${faculty.statistics.reconcile-interval}")
+    // not read-only: a lagging replica would undo changes that were already applied after commit
+    @Transactional
+    public synchronized void reconcile() {
+        Set<Long> journal = ConcurrentHashMap.newKeySet();
+        lock.writeLock().lock();
+        try {
+            touched = journal;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Map<Long, Membership> scanned = new ConcurrentHashMap<>();
+        Map<Long, Counters> rebuilt = new ConcurrentHashMap<>();
+        try {
+            // the scan runs unlocked, so commits meanwhile are not held up behind it
+            try (Stream<StudentMembership> rows = studentRepository.streamMemberships()) {
+                rows.forEach(row -> {
+                    Membership membership = new Membership(row.getFacultyId(), row.getAge());
+                    scanned.put(row.getStudentId(), membership);
+                    move(rebuilt, null, membership);
+                });
+            }
+        } catch (RuntimeException e) {
+            touched = null;
+            throw e;
+        }
+        Map<Long, Membership> previous;
+        lock.writeLock().lock();
+        try {
+            previous = memberships;
+            for (Long studentId : journal) {
+                Membership live = previous.get(studentId);
+                Membership read = live == null ? scanned.remove(studentId) : scanned.put(studentId, live);
+                move(rebuilt, read, live);
+            }
+            memberships = scanned;
+            counters = rebuilt;
+            touched = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        long drifted = scanned.entrySet().stream()
+                .filter(entry -> !entry.getValue().equals(previous.get(entry.getKey())))
+                .count() + previous.keySet().stream().filter(id -> !scanned.containsKey(id)).count();
+        logger.info("Reconciled statistics of {} students, {} were out of date", scanned.size(), drifted);
+    }
+
+    private void apply(List<StudentMembership> changes) {
+        lock.readLock().lock();
+        try {
+            for (StudentMembership change : changes) {
+                Membership next = new Membership(change.getFacultyId(), change.getAge());
+                journal(change.getStudentId());
+                // compute serialises changes of the same student; replaying a known state is a no-op
+                memberships.compute(change.getStudentId(), (id, previous) -> {
+                    if (!next.equals(previous)) {
+                        move(counters, previous, next);
+                    }
+                    return next;
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // callers hold the read lock, so a reconcile sees the journal entry before it swaps
+    private void journal(Long studentId) {
+        Set<Long> journal = touched;
+        if (journal != null) {
+            journal.add(studentId);
+        }
+    }
+
+    private static void move(Map<Long, Counters> counters, Membership from, Membership to) {
+        if (from != null && from.facultyId() != null) {
+            counters.get(from.facultyId()).add(from.age(), -1);
+        }
+        if (to != null && to.facultyId() != null) {
+            counters.computeIfAbsent(to.facultyId(), id -> new Counters()).add(to.age(), 1);
+        }
+    }
+
+    private record Membership(Long facultyId, Integer age) {
+    }
+
+    private static final class Counters {
+        private final LongAdder students = new LongAdder();
+        private final LongAdder withAge = new LongAdder();
+        private final LongAdder ageSum = new LongAdder();
+        private final AtomicLongArray ages = new AtomicLongArray(MAX_AGE + 1);
+
+        void add(Integer age, int delta) {
+            students.add(delta);
+            if (age != null) {
+                withAge.add(delta);
+                ageSum.add((long) age * delta);
+                ages.addAndGet(Math.max(0, Math.min(age, MAX_AGE)), delta);
+            }
+        }
+
+        FacultyStatistics toStatistics(Long facultyId) {
+            Map<Integer, Long> histogram = new TreeMap<>();
+            for (int age = 0; age <= MAX_AGE; age++) {
+                long count = ages.get(age);
+                if (count != 0) {
+                    histogram.put(age, count);
+                }
+            }
+            long aged = withAge.sum();
+            Double averageAge = aged == 0 ? null : (double) ageSum.sum() / aged;
+            return new FacultyStatistics(facultyId, students.sum(), averageAge, histogram);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ru.hogwarts.school.service.Impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.dto.AvatarContent;
+import ru.hogwarts.school.service.AvatarStorage;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+// keys are content hashes, so their leading characters spread files evenly over 256 * 256 directories
+@Service
+@ConditionalOnProperty(name = "avatar.storage.type", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemAvatarStorage implements AvatarStorage {
+    private static final Logger logger = LoggerFactory.getLogger(FileSystemAvatarStorage.class);
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{4}[0-9a-z-]*");
+    private static final String FLAT_VARIANTS = "variants";
+
+    private final Path root;
+
+    public FileSystemAvatarStorage(@Value("${avatar.dir.path}") String avatarsDir) throws IOException {
+        this.root = Path.of(avatarsDir);
+        Files.createDirectories(root);
+        fanOutFlatLayout();
+    }
+
+    @Override
+    public void store(String key, Path content) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        Files.move(content, target, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    @Override
+    public Optional<AvatarContent> find(String key) {
+        Path file = resolve(key);
+        return Files.exists(file) ? Optional.of(AvatarContent.ofFile(file)) : Optional.empty();
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(resolve(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    Path resolve(String key) {
+        if (!KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Not a content key: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    // earlier releases kept every blob in the root and every variant in one more directory
+    private void fanOutFlatLayout() throws IOException {
+        int moved = fanOut(root) + fanOut(root.resolve(FLAT_VARIANTS));
+        if (moved > 0) {
+            logger.info("Moved {} avatar files into the hashed directory layout", moved);
+        }
+    }
+
+    private int fanOut(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        int moved = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, Files::isRegularFile)) {
+            for (Path file : files) {
+                String key = file.getFileName().toString();
+                // uploads and variants still being written end in .tmp and do not match
+                if (KEY.matcher(key).matches() && key.length() >= 64) {
+                    store(key, file);
+                    moved++;
+                }
+            }
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,40 @@
+package ru.hogwarts.school.service.Impl;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.dto.AvatarContent;
+import ru.hogwarts.school.service.AvatarStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// for tests and throwaway nodes: the content is gone with the process while the blob rows stay
+@Service
+@ConditionalOnProperty(name = "avatar.storage.type", havingValue = "memory")
+public class InMemoryAvatarStorage implements AvatarStorage {
+    private final Map<String, byte[]> contents = new ConcurrentHashMap<>();
+
+    @Override
+    public void store(String key, Path content) throws IOException {
+        contents.putIfAbsent(key, Files.readAllBytes(content));
+    }
+
+    @Override
+    public Optional<AvatarContent> find(String key) {
+        return Optional.ofNullable(contents.get(key)).map(AvatarContent::ofBytes);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return contents.containsKey(key);
+    }
+
+    @Override
+    public void delete(String key) {
+        contents.remove(key);
+    }
+}
@@ -0,0 +1,52 @@
+package ru.hogwarts.school.service.Impl;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import ru.hogwarts.school.exception.InvalidPatchException;
+import ru.hogwarts.school.model.Versioned;
+
+import java.io.IOException;
+import java.util.Set;
+
+final class MergePatch {
+
+    private MergePatch() {
+    }
+
+    // RFC 7396 on a flat entity: present members replace the field, null clears it, absent ones stay as they are.
+    // The entity is managed, so the flush updates only the columns that really changed.
+    // Members outside patchable are rejected: Jackson would silently drop unknown and ignored ones.
+    static <T extends Versioned> T apply(ObjectMapper objectMapper, T entity, JsonNode patch, Long expectedVersion,
+                                         Set<String> patchable) {
+        if (!(patch instanceof ObjectNode)) {
+            throw new InvalidPatchException();
+        }
+        ObjectNode fields = ((ObjectNode) patch).deepCopy();
+        JsonNode id = fields.remove("id");
+        JsonNode version = fields.remove("version");
+        if (id != null && !id.isNull() && id.asLong() != entity.getId()) {
+            throw new InvalidPatchException();
+        }
+        if (expectedVersion == null && version != null && version.canConvertToLong()) {
+            expectedVersion = version.asLong();
+        }
+        if (expectedVersion != null && !expectedVersion.equals(entity.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(entity.getClass(), entity.getId());
+        }
+        fields.fieldNames().forEachRemaining(field -> {
+            if (!patchable.contains(field)) {
+                throw new InvalidPatchException();
+            }
+        });
+        try {
+            return objectMapper.readerForUpdating(entity)
+                    .with(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                    .readValue(fields);
+        } catch (IOException e) {
+            throw new InvalidPatchException();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package ru.hogwarts.school.service.Impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.StudentSearchService;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+@Service
+public class StudentSearchServiceImpl implements StudentSearchService {
+    private static final Logger logger = LoggerFactory.getLogger(StudentSearchServiceImpl.class);
+    private static final int GRAM = 3;
+    // cursor layout: 2 bits rank, 10 bits name length, 51 bits id
+    private static final int LENGTH_SHIFT = 51;
+    private static final int RANK_SHIFT = 61;
+    private static final int MAX_KEY_LENGTH = 1023;
+
+    private final StudentRepository studentRepository;
+    private final EntityManager entityManager;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // id -> detached snapshot (id, name, age) served by search
+    private final Map<Long, Student> students = new HashMap<>();
+    // trigram of the lower-cased name -> ascending student ids
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    public StudentSearchServiceImpl(StudentRepository studentRepository, EntityManager entityManager) {
+        this.studentRepository = studentRepository;
+        this.entityManager = entityManager;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    // not read-only: a lagging replica would drop names indexed after commit in the meantime
+    @Transactional
+    public void rebuild() {
+        Map<Long, Student> snapshots = new HashMap<>();
+        Map<Long, Postings> grams = new HashMap<>();
+        try (Stream<Student> rows = studentRepository.streamAllBy()) {
+            rows.forEach(student -> {
+                Student snapshot = snapshot(student);
+                snapshots.put(snapshot.getId(), snapshot);
+                forEachGram(normalize(snapshot.getName()),
+                        gram -> grams.computeIfAbsent(gram, g -> new Postings()).append(snapshot.getId()));
+                entityManager.detach(student);
+            });
+        }
+        grams.values().forEach(Postings::sort);
+        lock.writeLock().lock();
+        try {
+            students.clear();
+            students.putAll(snapshots);
+            postings.clear();
+            postings.putAll(grams);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Indexed {} student names into {} trigrams", snapshots.size(), grams.size());
+    }
+
+    @Override
+    public void index(Collection<Student> students) {
+        List<Student> snapshots = students.stream().map(StudentSearchServiceImpl::snapshot).toList();
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                snapshots.forEach(this::put);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public void remove(Long id) {
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                delete(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public CursorPage<Student> search(String query, Long after, Integer limit) {
+        String needle = normalize(query);
+        long from = CursorPage.after(after);
+        int pageSize = CursorPage.limit(limit);
+        List<Match> matches = new ArrayList<>();
+        if (needle.length() >= GRAM) {
+            lock.readLock().lock();
+            try {
+                for (long id : candidates(needle)) {
+                    match(students.get(id), needle, from, matches);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        matches.sort(Comparator.comparingLong(Match::key));
+
+        // the key of the last item is the cursor, so inserts and deletes in between do not shift the pages
+        List<Match> rows = matches.subList(0, Math.min(matches.size(), pageSize + 1));
+        return CursorPage.of(rows.stream().map(Match::student).toList(), pageSize,
+                student -> key(student, needle));
+    }
+
+    // ids whose name contains every trigram of the needle; they still have to be verified
+    private long[] candidates(String needle) {
+        List<Postings> lists = new ArrayList<>();
+        boolean[] missing = {false};
+        forEachGram(needle, gram -> {
+            Postings list = postings.get(gram);
+            if (list == null) {
+                missing[0] = true;
+            } else {
+                lists.add(list);
+            }
+        });
+        if (missing[0]) {
+            return new long[0];
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        long[] result = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+        int size = result.length;
+        for (int i = 1; i < lists.size() && size > 0; i++) {
+            size = lists.get(i).retainIn(result, size);
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static void match(Student student, String needle, long after, List<Match> matches) {
+        long key = key(student, needle);
+        if (key > after) {
+            matches.add(new Match(student, key));
+        }
+    }
+
+    // names starting with the query first, then word starts, then shorter names, then the id;
+    // packed into one positive long that orders like the tuple and serves as the page cursor
+    private static long key(Student student, String needle) {
+        String name = normalize(student.getName());
+        int at = name.indexOf(needle);
+        if (at < 0) {
+            return -1;
+        }
+        long rank = at == 0 ? 0 : Character.isLetterOrDigit(name.charAt(at - 1)) ? 2 : 1;
+        long length = Math.min(name.length(), MAX_KEY_LENGTH);
+        return rank << RANK_SHIFT | length << LENGTH_SHIFT | student.getId();
+    }
+
+    private void put(Student snapshot) {
+        delete(snapshot.getId());
+        students.put(snapshot.getId(), snapshot);
+        forEachGram(normalize(snapshot.getName()),
+                gram -> postings.computeIfAbsent(gram, g -> new Postings()).insert(snapshot.getId()));
+    }
+
+    private void delete(Long id) {
+        Student previous = students.remove(id);
+        if (previous == null) {
+            return;
+        }
+        forEachGram(normalize(previous.getName()), gram -> {
+            Postings list = postings.get(gram);
+            if (list != null && list.delete(id) == 0) {
+                postings.remove(gram);
+            }
+        });
+    }
+
+    private static Student snapshot(Student student) {
+        Student copy = new Student(student.getId(), student.getName(), student.getAge());
+        copy.setVersion(student.getVersion());
+        return copy;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static void forEachGram(String text, GramConsumer consumer) {
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            consumer.accept(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+    }
+
+    @FunctionalInterface
+    private interface GramConsumer {
+        void accept(long gram);
+    }
+
+    private record Match(Student student, long key) {
+    }
+
+    // sorted, duplicate free list of student ids
+    private static final class Postings {
+        private long[] ids = new long[4];
+        private int size;
+
+        void append(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        // used after bulk appends; a name repeating a trigram appends the same id twice
+        void sort() {
+            Arrays.sort(ids, 0, size);
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (unique == 0 || ids[unique - 1] != ids[i]) {
+                    ids[unique++] = ids[i];
+                }
+            }
+            size = unique;
+        }
+
+        void insert(long id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        int delete(long id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+                size--;
+            }
+            return size;
+        }
+
+        // keeps in target[0..targetSize) only the ids also present here, returns the new size
+        int retainIn(long[] target, int targetSize) {
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < targetSize; i++) {
+                int at = Arrays.binarySearch(ids, from, size, target[i]);
+                if (at >= 0) {
+                    target[kept++] = target[i];
+                    from = at + 1;
+                } else {
+                    from = -at - 1;
+                }
+            }
+            return kept;
+        }
+    }
+}
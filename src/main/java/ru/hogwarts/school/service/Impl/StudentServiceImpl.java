@@ -1,59 +1,230 @@
 package ru.hogwarts.school.service.Impl;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.annotation.Timed;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.config.CacheConfig;
+import ru.hogwarts.school.config.MetricsConfig;
+import ru.hogwarts.school.dto.CursorPage;
 import ru.hogwarts.school.exception.EntityNotFoundException;
+import ru.hogwarts.school.exception.InvalidPageException;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.AvatarReclaimService;
+import ru.hogwarts.school.service.FacultyStatisticsService;
+import ru.hogwarts.school.service.StudentSearchService;
 import ru.hogwarts.school.service.StudentService;
 
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed(MetricsConfig.SERVICE_TIMER)
 public class StudentServiceImpl implements StudentService {
 
+    // the faculty is not part of the student's JSON, so a patch cannot move the student
+    private static final Set<String> PATCHABLE = Set.of("name", "age");
+
     private final StudentRepository studentRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final StudentSearchService searchService;
+    private final FacultyStatisticsService statisticsService;
+    private final AvatarReclaimService avatarReclaimService;
+    private final int batchSize;
 
-    public StudentServiceImpl(StudentRepository studentRepository) {
+    public StudentServiceImpl(StudentRepository studentRepository, EntityManager entityManager,
+                              ObjectMapper objectMapper, StudentSearchService searchService,
+                              FacultyStatisticsService statisticsService, AvatarReclaimService avatarReclaimService,
+                              @Value("${spring.jpa.properties.hibernate.jdbc.batch_size}") int batchSize) {
         this.studentRepository = studentRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.searchService = searchService;
+        this.statisticsService = statisticsService;
+        this.avatarReclaimService = avatarReclaimService;
+        this.batchSize = batchSize;
     }
 
     @Override
+    @CachePut(cacheNames = CacheConfig.STUDENTS, key = "#result.id")
     public Student add(Student student) {
-        return studentRepository.save(student);
+        Student saved = studentRepository.save(student);
+        searchService.index(List.of(saved));
+        statisticsService.record(List.of(saved));
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public List<Student> addAll(List<Student> students) {
+        students.forEach(student -> student.setId(null));
+        List<Student> saved = BatchWriter.saveAll(studentRepository, entityManager, students, batchSize);
+        searchService.index(saved);
+        statisticsService.record(saved);
+        return saved;
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.STUDENTS, key = "#id")
     public Student get(Long id) {
         return studentRepository.findById(id).orElseThrow(EntityNotFoundException::new);
 
     }
 
     @Override
+    @Transactional
+    @CachePut(cacheNames = CacheConfig.STUDENTS, key = "#result.id")
     public Student update(Student student) {
-        return studentRepository.save(student);
+        // a PUT without an id has always created the student
+        if (student.getId() == null) {
+            return add(student);
+        }
+        Student current = studentRepository.findById(student.getId()).orElseThrow(EntityNotFoundException::new);
+        if (student.getVersion() == null) {
+            student.setVersion(current.getVersion());
+        }
+        Student saved = studentRepository.save(student);
+        // the merge bumps the version only on flush; the search snapshot and the ETag must carry the same one
+        studentRepository.flush();
+        searchService.index(List.of(saved));
+        statisticsService.record(List.of(saved));
+        return saved;
     }
 
     @Override
+    @Transactional
+    @CachePut(cacheNames = CacheConfig.STUDENTS, key = "#result.id")
+    public Student patch(Long id, JsonNode patch, Long version) {
+        Student student = studentRepository.findById(id).orElseThrow(EntityNotFoundException::new);
+        MergePatch.apply(objectMapper, student, patch, version, PATCHABLE);
+        // flushing here bumps the version before the search index copies the entity
+        studentRepository.flush();
+        searchService.index(List.of(student));
+        statisticsService.record(List.of(student));
+        return student;
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.STUDENTS, allEntries = true)
+    public List<Student> updateAll(List<Student> students) {
+        List<Student> saved = BatchWriter.saveAll(studentRepository, entityManager, students, batchSize);
+        searchService.index(saved);
+        statisticsService.record(saved);
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.STUDENTS, key = "#id")
     public Student remove(Long id) {
-        Student student = get(id);
-        studentRepository.deleteById(id);
+        return remove(id, null);
+    }
+
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.STUDENTS, key = "#id")
+    public Student remove(Long id, Long version) {
+        avatarReclaimService.detachStudents(List.of(id));
+        Student student = studentRepository.deleteReturning(id, version)
+                .orElseThrow(() -> missingOrStale(id, version));
+        searchService.remove(id);
+        statisticsService.remove(id);
         return student;
     }
 
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.STUDENTS, allEntries = true)
+    public List<Student> removeAll(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        avatarReclaimService.detachStudents(ids);
+        List<Student> removed = studentRepository.deleteAllReturning(ids);
+        for (Student student : removed) {
+            searchService.remove(student.getId());
+            statisticsService.remove(student.getId());
+        }
+        return removed;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Collection<Student> getByAge(Integer startAge, Integer endAge) {
         return studentRepository.findByAgeBetween(startAge,endAge);
     }
 
     @Override
-    public Collection<Student> getAll() {
-        return studentRepository.findAll();
+    @Transactional(readOnly = true)
+    public CursorPage<Student> getAll(Long after, Integer limit) {
+        int pageSize = CursorPage.limit(limit);
+        List<Student> rows = studentRepository.findByIdGreaterThanOrderByIdAsc(CursorPage.after(after),
+                PageRequest.of(0, pageSize + 1));
+        return CursorPage.of(rows, pageSize, Student::getId);
+    }
+
+    @Override
+    public CursorPage<Student> search(String query, Long after, Integer limit) {
+        if (query.length() < StudentSearchService.MIN_QUERY_LENGTH
+                || after != null && after < 0 || limit != null && limit <= 0) {
+            throw new InvalidPageException();
+        }
+        return searchService.search(query, after, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportAll(OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(Student.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (Stream<Student> students = studentRepository.streamAllBy();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            Iterator<Student> iterator = students.iterator();
+            while (iterator.hasNext()) {
+                Student student = iterator.next();
+                writer.writeValue(generator, student);
+                generator.writeRaw('\n');
+                entityManager.detach(student);
+            }
+        }
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Faculty getFacultyOfStudent(Long studentId) {
-        return get(studentId).getFaculty();
+        Student student = studentRepository.findById(studentId).orElseThrow(EntityNotFoundException::new);
+        // resolving the lazy reference goes through the second-level cache instead of joining faculties
+        return (Faculty) Hibernate.unproxy(student.getFaculty());
+    }
+
+    // nothing was deleted: the row is either gone or carries another version
+    private RuntimeException missingOrStale(Long id, Long version) {
+        return version != null && studentRepository.existsById(id)
+                ? new ObjectOptimisticLockingFailureException(Student.class, id)
+                : new EntityNotFoundException();
     }
 }
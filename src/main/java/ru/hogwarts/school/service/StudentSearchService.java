@@ -0,0 +1,17 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.model.Student;
+
+import java.util.Collection;
+
+public interface StudentSearchService {
+    // shorter queries have no trigram to look up and would have to scan every name
+    int MIN_QUERY_LENGTH = 3;
+
+    void index(Collection<Student> students);
+
+    void remove(Long id);
+
+    CursorPage<Student> search(String query, Long after, Integer limit);
+}
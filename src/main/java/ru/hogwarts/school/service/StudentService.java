@@ -1,23 +1,42 @@
 package ru.hogwarts.school.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import ru.hogwarts.school.dto.CursorPage;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 
 import javax.persistence.criteria.CriteriaBuilder;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collection;
+import java.util.List;
 
 public interface StudentService {
     Student add(Student student);
 
+    List<Student> addAll(List<Student> students);
+
     Student get(Long id);
 
     Student update(Student student);
 
+    Student patch(Long id, JsonNode patch, Long version);
+
+    List<Student> updateAll(List<Student> students);
+
     Student remove(Long id);
 
+    Student remove(Long id, Long version);
+
+    List<Student> removeAll(Collection<Long> ids);
+
     Collection<Student> getByAge(Integer startAge, Integer endAge);
 
-    Collection<Student> getAll();
+    CursorPage<Student> getAll(Long after, Integer limit);
+
+    CursorPage<Student> search(String query, Long after, Integer limit);
+
+    void exportAll(OutputStream out) throws IOException;
 
 
     Faculty getFacultyOfStudent(Long studentId);
@@ -0,0 +1,16 @@
+-- content-addressed avatar storage; the bytes live in the storage, not in the avatars row
+create table avatar_blobs (
+    hash       varchar(255) not null,
+    size       bigint       not null,
+    media_type varchar(255),
+    ref_count  integer      not null,
+    primary key (hash)
+);
+
+alter table avatars add column content_hash varchar(255);
+alter table avatars drop column data;
+
+-- ids come from pooled sequences now; V4 moves them past max(id) on Postgres
+create sequence if not exists faculties_seq start with 1 increment by 50;
+create sequence if not exists students_seq start with 1 increment by 50;
+create sequence if not exists avatars_seq start with 1 increment by 50;
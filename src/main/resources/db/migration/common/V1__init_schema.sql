@@ -0,0 +1,27 @@
+-- the schema ddl-auto generated before Flyway; existing databases are baselined at this version
+create table faculties (
+    id    bigint generated by default as identity,
+    name  varchar(255),
+    color varchar(255),
+    primary key (id)
+);
+
+create table students (
+    id         bigint generated by default as identity,
+    name       varchar(255),
+    age        integer,
+    faculty_id bigint,
+    primary key (id),
+    constraint fk_students_faculty foreign key (faculty_id) references faculties (id)
+);
+
+create table avatars (
+    id         bigint generated by default as identity,
+    file_path  varchar(255),
+    file_size  bigint not null,
+    media_type varchar(255),
+    data       bytea,
+    student_id bigint,
+    primary key (id),
+    constraint fk_avatars_student foreign key (student_id) references students (id)
+);
@@ -0,0 +1,8 @@
+-- StudentRepository.findByAgeBetween
+create index idx_students_age on students (age);
+-- StudentRepository.findByFacultyIdAndIdGreaterThanOrderByIdAsc and the faculty -> students join
+create index idx_students_faculty_id on students (faculty_id, id);
+-- AvatarRepository.findByStudentId; one avatar per student
+create unique index ux_avatars_student_id on avatars (student_id);
+-- AvatarRepository.findMetadataByContentHash
+create index idx_avatars_content_hash on avatars (content_hash);
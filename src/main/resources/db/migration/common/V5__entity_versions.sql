@@ -0,0 +1,4 @@
+-- optimistic locking for Student, Faculty and Avatar; existing rows start at version 0
+alter table students add column version bigint default 0 not null;
+alter table faculties add column version bigint default 0 not null;
+alter table avatars add column version bigint default 0 not null;
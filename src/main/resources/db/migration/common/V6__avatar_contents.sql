@@ -0,0 +1,6 @@
+-- used only with avatar.storage.type=database
+create table avatar_contents (
+    content_key varchar(255) not null,
+    data        bytea        not null,
+    primary key (content_key)
+);
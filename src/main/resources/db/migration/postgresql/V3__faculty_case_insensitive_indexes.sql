@@ -0,0 +1,4 @@
+-- FacultyRepository.findByNameIgnoreCaseOrColorIgnoreCase compiles to upper(name) = upper(?)
+-- or upper(color) = upper(?); each branch gets its own expression index for a bitmap OR
+create index idx_faculties_upper_name on faculties (upper(name));
+create index idx_faculties_upper_color on faculties (upper(color));
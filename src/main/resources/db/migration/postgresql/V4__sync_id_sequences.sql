@@ -0,0 +1,12 @@
+-- databases baselined from the ddl-auto schema may lack the sequences or have them behind max(id)
+create sequence if not exists faculties_seq increment by 50;
+create sequence if not exists students_seq increment by 50;
+create sequence if not exists avatars_seq increment by 50;
+alter sequence faculties_seq increment by 50;
+alter sequence students_seq increment by 50;
+alter sequence avatars_seq increment by 50;
+
+-- the pooled optimizer hands out (nextval - 49 .. nextval), so the next block starts after max(id)
+select setval('faculties_seq', max(id)) from faculties having max(id) is not null;
+select setval('students_seq', max(id)) from students having max(id) is not null;
+select setval('avatars_seq', max(id)) from avatars having max(id) is not null;
@@ -0,0 +1,244 @@
+package ru.hogwarts.school;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.hogwarts.school.config.MetricsConfig;
+import ru.hogwarts.school.controller.AvatarContentWriter;
+import ru.hogwarts.school.controller.AvatarController;
+import ru.hogwarts.school.dto.AvatarContent;
+import ru.hogwarts.school.dto.AvatarIngestionJob;
+import ru.hogwarts.school.dto.AvatarIngestionStatus;
+import ru.hogwarts.school.dto.AvatarMetadata;
+import ru.hogwarts.school.dto.AvatarVariant;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.exception.AvatarIngestionBusyException;
+import ru.hogwarts.school.service.AvatarIngestionService;
+import ru.hogwarts.school.service.AvatarCacheService;
+import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.AvatarVariantService;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(AvatarController.class)
+@Import({AvatarContentWriter.class, SimpleMeterRegistry.class})
+public class AvatarCrmApplicationWithMockTest {
+    private static final String HASH = "abc123";
+    private static final String ETAG = "\"" + HASH + "\"";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private AvatarService avatarService;
+    @MockBean
+    private AvatarVariantService variantService;
+    @MockBean
+    private AvatarIngestionService ingestionService;
+    @MockBean
+    private AvatarCacheService cacheService;
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+
+    @BeforeEach
+    void init() throws Exception {
+        file = Files.write(tempDir.resolve(HASH), "0123456789".getBytes());
+        AvatarMetadata avatar = new AvatarMetadata(1L, 1L, file.toString(), 10, "image/png", HASH, 0L);
+        when(cacheService.find(HASH)).thenReturn(Optional.of(AvatarContent.ofFile(file)));
+        when(variantService.findVariant(any(), any(), anyInt())).thenReturn(Optional.empty());
+        when(avatarService.findAvatar(1L)).thenReturn(avatar);
+        when(avatarService.findAvatarByContentHash(HASH)).thenReturn(avatar);
+        when(avatarService.getAll(null, null)).thenReturn(new CursorPage<>(List.of(avatar), null));
+    }
+
+    @Test
+    void downloadAvatarFromFile() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-file"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, AvatarContentWriter.NO_CACHE))
+                .andExpect(header().string(HttpHeaders.CONTENT_LOCATION, "/avatar/content/" + HASH))
+                .andExpect(content().contentType("image/png"))
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    void downloadedBytesAreCounted() throws Exception {
+        Counter copied = meterRegistry.get(MetricsConfig.AVATAR_DOWNLOAD_BYTES).tag("transfer", "channel").counter();
+        double before = copied.count();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-file")
+                        .header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent());
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-file")
+                        .header(HttpHeaders.IF_NONE_MATCH, ETAG))
+                .andExpect(status().isNotModified());
+
+        assertThat(copied.count() - before).isEqualTo(4);
+    }
+
+    @Test
+    void notModifiedWhenEtagMatches() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-db")
+                        .header(HttpHeaders.IF_NONE_MATCH, ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void partialContentForRange() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-file")
+                        .header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+                .andExpect(content().string("2345"));
+    }
+
+    @Test
+    void partialContentFromOffHeapBuffer() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(10).put("0123456789".getBytes()).flip();
+        when(cacheService.find(HASH)).thenReturn(Optional.of(AvatarContent.ofBuffer(buffer)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-db")
+                        .header(HttpHeaders.RANGE, "bytes=6-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 6-9/10"))
+                .andExpect(content().string("6789"));
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-db"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    void rangeIgnoredWhenIfRangeIsStale() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-file")
+                        .header(HttpHeaders.RANGE, "bytes=2-5")
+                        .header(HttpHeaders.IF_RANGE, "\"other\""))
+                .andExpect(status().isOk())
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    void unsatisfiableRange() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-file")
+                        .header(HttpHeaders.RANGE, "bytes=20-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+    }
+
+    @Test
+    void downloadVariant() throws Exception {
+        Path variantFile = Files.write(tempDir.resolve(HASH + "-64"), "small".getBytes());
+        when(variantService.findVariant(HASH, "image/png", 50))
+                .thenReturn(Optional.of(new AvatarVariant(AvatarContent.ofFile(variantFile), 64, "image/png")));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-file?size=50"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + HASH + "-64\""))
+                .andExpect(header().string(HttpHeaders.CONTENT_LOCATION, "/avatar/content/" + HASH + "?size=64"))
+                .andExpect(content().string("small"));
+    }
+
+    @Test
+    void originalServedUntilVariantExists() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/content/" + HASH + "?size=32"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, AvatarContentWriter.NO_CACHE))
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    void contentAddressedAvatarIsImmutable() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/content/" + HASH))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, AvatarContentWriter.IMMUTABLE))
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    void listAvatarMetadata() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("items[0]id").value(1L))
+                .andExpect(jsonPath("items[0]studentId").value(1L))
+                .andExpect(jsonPath("items[0]fileSize").value(10))
+                .andExpect(jsonPath("items[0]mediaType").value("image/png"))
+                .andExpect(jsonPath("items[0]contentHash").value(HASH))
+                .andExpect(jsonPath("items[0]filePath").doesNotExist());
+    }
+
+    @Test
+    void asyncUploadIsAccepted() throws Exception {
+        UUID jobId = UUID.randomUUID();
+        AvatarIngestionJob job = new AvatarIngestionJob(jobId, 1L, AvatarIngestionStatus.QUEUED, null);
+        when(ingestionService.submit(eq(1L), any())).thenReturn(job);
+
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/avatar/1/avatar?async=true").file(upload()))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.LOCATION, "/avatar/jobs/" + jobId))
+                .andExpect(jsonPath("id").value(jobId.toString()))
+                .andExpect(jsonPath("status").value("QUEUED"));
+        verify(avatarService, never()).uploadAvatar(any(), any());
+    }
+
+    @Test
+    void asyncUploadIsThrottledWhenQueueIsFull() throws Exception {
+        when(ingestionService.submit(eq(1L), any())).thenThrow(new AvatarIngestionBusyException());
+
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/avatar/1/avatar?async=true").file(upload()))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void ingestionJobStatus() throws Exception {
+        UUID jobId = UUID.randomUUID();
+        when(ingestionService.getJob(jobId)).thenReturn(
+                new AvatarIngestionJob(jobId, 1L, AvatarIngestionStatus.FAILED, "415 UNSUPPORTED_MEDIA_TYPE"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/jobs/" + jobId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("studentId").value(1L))
+                .andExpect(jsonPath("status").value("FAILED"))
+                .andExpect(jsonPath("error").value("415 UNSUPPORTED_MEDIA_TYPE"));
+    }
+
+    private static MockMultipartFile upload() {
+        return new MockMultipartFile("avatar", "avatar.png", "image/png", "0123456789".getBytes());
+    }
+}
@@ -0,0 +1,317 @@
+package ru.hogwarts.school;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.mock.web.MockMultipartFile;
+import ru.hogwarts.school.dto.AvatarContent;
+import ru.hogwarts.school.dto.AvatarIngestionJob;
+import ru.hogwarts.school.dto.AvatarIngestionStatus;
+import ru.hogwarts.school.dto.AvatarMetadata;
+import ru.hogwarts.school.dto.AvatarVariant;
+import ru.hogwarts.school.exception.AvatarTooLargeException;
+import ru.hogwarts.school.exception.UnsupportedAvatarTypeException;
+import ru.hogwarts.school.model.AvatarBlob;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.AvatarBlobRepository;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.AvatarCacheService;
+import ru.hogwarts.school.service.AvatarIngestionService;
+import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.AvatarStorage;
+import ru.hogwarts.school.service.AvatarVariantService;
+import ru.hogwarts.school.service.StudentService;
+
+import javax.imageio.ImageIO;
+import javax.servlet.MultipartConfigElement;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "avatar.max-size=1KB")
+public class AvatarServiceApplicationTest {
+    @Autowired
+    private AvatarService avatarService;
+    @Autowired
+    private AvatarVariantService variantService;
+    @Autowired
+    private AvatarStorage storage;
+    @Autowired
+    private AvatarCacheService cacheService;
+    @Autowired
+    private AvatarIngestionService ingestionService;
+    @Autowired
+    private AvatarRepository avatarRepository;
+    @Autowired
+    private AvatarBlobRepository blobRepository;
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private StudentService studentService;
+    @Autowired
+    private MultipartConfigElement multipartConfig;
+
+    @AfterEach
+    public void afterEach() {
+        avatarRepository.deleteAll();
+        blobRepository.deleteAll();
+        studentRepository.deleteAll();
+    }
+
+    @Test
+    public void multipartLimitsFollowTheAvatarSize() {
+        assertThat(multipartConfig.getMaxFileSize()).isEqualTo(1024);
+        assertThat(multipartConfig.getMaxRequestSize()).isEqualTo(1024 + 1024 * 1024);
+    }
+
+    @Test
+    public void sameImageIsStoredOnce() throws Exception {
+        Student harry = studentRepository.save(new Student(null, "Harry", 11));
+        Student ron = studentRepository.save(new Student(null, "Ron", 11));
+        byte[] image = png(1, 2, 3, 4, 5);
+
+        avatarService.uploadAvatar(harry.getId(), file(image));
+        avatarService.uploadAvatar(ron.getId(), file(image));
+
+        AvatarMetadata harryAvatar = avatarService.findAvatar(harry.getId());
+        AvatarMetadata ronAvatar = avatarService.findAvatar(ron.getId());
+        assertThat(harryAvatar.getContentHash()).isEqualTo(ronAvatar.getContentHash());
+        assertThat(harryAvatar.getFileSize()).isEqualTo(image.length);
+        assertThat(harryAvatar.getMediaType()).isEqualTo("image/png");
+
+        AvatarBlob blob = blobRepository.findById(harryAvatar.getContentHash()).orElseThrow();
+        assertThat(blob.getRefCount()).isEqualTo(2);
+        assertThat(read(blob.getHash())).isEqualTo(image);
+        String hash = blob.getHash();
+        assertThat(Path.of("target/test-avatars", hash.substring(0, 2), hash.substring(2, 4), hash)).exists();
+        assertThat(avatarService.getAll(null, null).getItems())
+                .extracting(AvatarMetadata::getStudentId)
+                .containsExactly(harry.getId(), ron.getId());
+    }
+
+    @Test
+    public void replacedImageIsRemovedWhenUnreferenced() throws Exception {
+        Student harry = studentRepository.save(new Student(null, "Harry", 11));
+
+        avatarService.uploadAvatar(harry.getId(), file(png(1, 2, 3)));
+        String firstHash = avatarService.findAvatar(harry.getId()).getContentHash();
+        avatarService.uploadAvatar(harry.getId(), file(png(4, 5, 6)));
+        String secondHash = avatarService.findAvatar(harry.getId()).getContentHash();
+
+        assertThat(secondHash).isNotEqualTo(firstHash);
+        assertThat(blobRepository.findById(firstHash)).isEmpty();
+        assertThat(storage.exists(firstHash)).isFalse();
+        assertThat(blobRepository.findById(secondHash).orElseThrow().getRefCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void hotAvatarsAreServedOffHeapUntilReplaced() throws Exception {
+        Student harry = studentRepository.save(new Student(null, "Harry", 11));
+        byte[] image = png(2, 7, 1, 8);
+        avatarService.uploadAvatar(harry.getId(), file(image));
+        String hash = avatarService.findAvatar(harry.getId()).getContentHash();
+
+        AvatarContent cached = cacheService.find(hash).orElseThrow();
+        assertThat(cacheService.find(hash).orElseThrow()).isSameAs(cached);
+        assertThat(cached.getFile()).isEmpty();
+        try (InputStream in = cached.openStream()) {
+            assertThat(in.readAllBytes()).isEqualTo(image);
+        }
+
+        avatarService.uploadAvatar(harry.getId(), file(png(3, 1, 4, 1)));
+        assertThat(cacheService.find(hash)).isEmpty();
+    }
+
+    @Test
+    public void deletedStudentsReleaseTheirAvatarsInBackground() throws Exception {
+        Student harry = studentRepository.save(new Student(null, "Harry", 11));
+        Student ron = studentRepository.save(new Student(null, "Ron", 11));
+        Student ginny = studentRepository.save(new Student(null, "Ginny", 10));
+        byte[] image = png(3, 1, 4);
+        avatarService.uploadAvatar(harry.getId(), file(image));
+        avatarService.uploadAvatar(ron.getId(), file(image));
+        avatarService.uploadAvatar(ginny.getId(), file(png(1, 5, 9)));
+        String sharedHash = avatarService.findAvatar(harry.getId()).getContentHash();
+        String ginnyHash = avatarService.findAvatar(ginny.getId()).getContentHash();
+
+        studentService.remove(harry.getId());
+        assertThat(avatarRepository.findByStudentId(harry.getId())).isEmpty();
+        assertThat(blobRepository.findById(sharedHash).orElseThrow().getRefCount()).isEqualTo(1);
+
+        studentService.removeAll(List.of(ron.getId(), ginny.getId()));
+        assertThat(avatarRepository.count()).isZero();
+        for (int attempt = 0; attempt < 50 && blobRepository.count() > 0; attempt++) {
+            Thread.sleep(100);
+        }
+        assertThat(blobRepository.count()).isZero();
+        assertThat(storage.exists(sharedHash)).isFalse();
+        assertThat(storage.exists(ginnyHash)).isFalse();
+    }
+
+    @Test
+    public void variantsAreGeneratedAfterUpload() throws Exception {
+        Student harry = studentRepository.save(new Student(null, "Harry", 11));
+        BufferedImage image = new BufferedImage(256, 128, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+
+        avatarService.uploadAvatar(harry.getId(), file(png.toByteArray()));
+        AvatarMetadata avatar = avatarService.findAvatar(harry.getId());
+
+        Optional<AvatarVariant> variant = Optional.empty();
+        for (int attempt = 0; attempt < 50 && variant.isEmpty(); attempt++) {
+            Thread.sleep(100);
+            variant = variantService.findVariant(avatar.getContentHash(), avatar.getMediaType(), 40);
+        }
+        assertThat(variant).isPresent();
+        assertThat(variant.get().getSize()).isEqualTo(64);
+        BufferedImage scaled = ImageIO.read(variant.get().getContent().openStream());
+        assertThat(scaled.getWidth()).isEqualTo(64);
+        assertThat(scaled.getHeight()).isEqualTo(32);
+    }
+
+    @Test
+    public void variantsAreNotBuiltForHugeImages() throws Exception {
+        Student harry = studentRepository.save(new Student(null, "Harry", 11));
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY), "png", png);
+        // the header claims 30000 x 30000 pixels, decoding that would need gigabytes
+        ByteBuffer bomb = ByteBuffer.wrap(png.toByteArray());
+        bomb.putInt(16, 30000).putInt(20, 30000);
+        CRC32 crc = new CRC32();
+        crc.update(bomb.array(), 12, 17);
+        bomb.putInt(29, (int) crc.getValue());
+
+        avatarService.uploadAvatar(harry.getId(), file(bomb.array()));
+        AvatarMetadata avatar = avatarService.findAvatar(harry.getId());
+
+        for (int attempt = 0; attempt < 10; attempt++) {
+            Thread.sleep(100);
+            assertThat(variantService.findVariant(avatar.getContentHash(), avatar.getMediaType(), 40)).isEmpty();
+        }
+        assertThat(read(avatar.getContentHash())).isEqualTo(bomb.array());
+    }
+
+    @Test
+    public void uploadWithUnknownSignatureIsRejected() {
+        Student harry = studentRepository.save(new Student(null, "Harry", 11));
+
+        assertThatThrownBy(() -> avatarService.uploadAvatar(harry.getId(), file(new byte[]{1, 2, 3, 4, 5})))
+                .isInstanceOf(UnsupportedAvatarTypeException.class);
+        assertThat(blobRepository.count()).isZero();
+    }
+
+    @Test
+    public void oversizedUploadIsRejected() {
+        Student harry = studentRepository.save(new Student(null, "Harry", 11));
+
+        assertThatThrownBy(() -> avatarService.uploadAvatar(harry.getId(), file(png(new int[2048]))))
+                .isInstanceOf(AvatarTooLargeException.class);
+        assertThat(blobRepository.count()).isZero();
+    }
+
+    @Test
+    public void asyncUploadIsStoredInBackground() throws Exception {
+        Student harry = studentRepository.save(new Student(null, "Harry", 11));
+        byte[] image = png(7, 8, 9);
+
+        AvatarIngestionJob job = ingestionService.submit(harry.getId(), file(image));
+
+        assertThat(awaitCompletion(job).getStatus()).isEqualTo(AvatarIngestionStatus.DONE);
+        AvatarMetadata avatar = avatarService.findAvatar(harry.getId());
+        assertThat(read(avatar.getContentHash())).isEqualTo(image);
+    }
+
+    @Test
+    public void spooledUploadsAreResumedOnStart() throws Exception {
+        Student harry = studentRepository.save(new Student(null, "Harry", 11));
+        byte[] image = png(2, 4, 6);
+        UUID jobId = UUID.randomUUID();
+        Path spooled = Files.write(Path.of("target/test-avatars/spool", jobId + "_" + harry.getId()), image);
+
+        ((SmartLifecycle) ingestionService).start();
+
+        assertThat(awaitCompletion(ingestionService.getJob(jobId)).getStatus()).isEqualTo(AvatarIngestionStatus.DONE);
+        assertThat(read(avatarService.findAvatar(harry.getId()).getContentHash())).isEqualTo(image);
+        assertThat(spooled).doesNotExist();
+    }
+
+    @Test
+    public void failedSpoolingLeavesNoPartFile() throws Exception {
+        Student harry = studentRepository.save(new Student(null, "Harry", 11));
+        MockMultipartFile broken = new MockMultipartFile("avatar", "avatar.png", "image/png", png(1)) {
+            @Override
+            public void transferTo(File dest) throws IOException {
+                Files.write(dest.toPath(), png(1));
+                throw new IOException("connection reset");
+            }
+        };
+
+        assertThatThrownBy(() -> ingestionService.submit(harry.getId(), broken)).isInstanceOf(IOException.class);
+
+        try (Stream<Path> files = Files.list(Path.of("target/test-avatars/spool"))) {
+            assertThat(files).noneMatch(file -> file.getFileName().toString().endsWith(".part"));
+        }
+    }
+
+    @Test
+    public void asyncUploadWithUnknownSignatureFails() throws Exception {
+        Student harry = studentRepository.save(new Student(null, "Harry", 11));
+
+        AvatarIngestionJob job = ingestionService.submit(harry.getId(), file(new byte[]{1, 2, 3, 4, 5}));
+
+        AvatarIngestionJob finished = awaitCompletion(job);
+        assertThat(finished.getStatus()).isEqualTo(AvatarIngestionStatus.FAILED);
+        assertThat(finished.getError()).startsWith("415");
+        assertThat(blobRepository.count()).isZero();
+    }
+
+    private AvatarIngestionJob awaitCompletion(AvatarIngestionJob job) throws InterruptedException {
+        AvatarIngestionJob current = job;
+        for (int attempt = 0; attempt < 50 && !finished(current); attempt++) {
+            Thread.sleep(100);
+            current = ingestionService.getJob(job.getId());
+        }
+        return current;
+    }
+
+    private static boolean finished(AvatarIngestionJob job) {
+        return job.getStatus() == AvatarIngestionStatus.DONE || job.getStatus() == AvatarIngestionStatus.FAILED;
+    }
+
+    private byte[] read(String hash) throws Exception {
+        try (InputStream in = storage.find(hash).orElseThrow().openStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static MockMultipartFile file(byte[] content) {
+        return new MockMultipartFile("avatar", "avatar.png", "image/png", content);
+    }
+
+    private static byte[] png(int... tail) {
+        byte[] signature = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+        byte[] content = Arrays.copyOf(signature, signature.length + tail.length);
+        for (int i = 0; i < tail.length; i++) {
+            content[signature.length + i] = (byte) tail[i];
+        }
+        return content;
+    }
+}
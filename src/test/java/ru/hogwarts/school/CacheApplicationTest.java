@@ -0,0 +1,134 @@
+package ru.hogwarts.school;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import ru.hogwarts.school.config.CacheConfig;
+import ru.hogwarts.school.exception.EntityNotFoundException;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentService;
+
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class CacheApplicationTest {
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private TestRestTemplate testRestTemplate;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private StudentService studentService;
+    @Autowired
+    private FacultyService facultyService;
+    @SpyBean
+    private StudentRepository studentRepository;
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    private Cache students;
+
+    @BeforeEach
+    public void beforeEach() {
+        students = cacheManager.getCache(CacheConfig.STUDENTS);
+        students.clear();
+        clearInvocations(studentRepository);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        studentRepository.deleteAll();
+        facultyRepository.deleteAll();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    public void repeatedLookupIsServedFromCache() {
+        Long id = studentRepository.save(new Student(null, "Neville", 11)).getId();
+
+        assertThat(studentService.get(id).getName()).isEqualTo("Neville");
+        assertThat(studentService.get(id).getName()).isEqualTo("Neville");
+
+        verify(studentRepository, times(1)).findById(id);
+    }
+
+    @Test
+    public void removeEvictsTheStudent() {
+        Long id = studentService.add(new Student(null, "Seamus", 11)).getId();
+        studentService.get(id);
+        assertThat(students.get(id)).isNotNull();
+
+        studentService.remove(id);
+
+        assertThat(students.get(id)).isNull();
+        assertThatThrownBy(() -> studentService.get(id)).isInstanceOf(EntityNotFoundException.class);
+    }
+
+    @Test
+    public void updatePutsTheFreshStudent() {
+        Student saved = studentService.add(new Student(null, "Dean", 11));
+        studentService.get(saved.getId());
+
+        Student renamed = new Student(saved.getId(), "Dean Thomas", 12);
+        studentService.update(renamed);
+        clearInvocations(studentRepository);
+
+        Student cached = studentService.get(saved.getId());
+        assertThat(cached.getName()).isEqualTo("Dean Thomas");
+        assertThat(cached.getAge()).isEqualTo(12);
+        verify(studentRepository, never()).findById(saved.getId());
+    }
+
+    @Test
+    public void statisticsReportHitsAndMisses() {
+        Long id = studentRepository.save(new Student(null, "Lavender", 11)).getId();
+        Faculty faculty = new Faculty();
+        faculty.setName("Hufflepuff");
+        faculty.setColor("yellow");
+        facultyService.add(faculty);
+        JsonNode before = statistics(CacheConfig.STUDENTS);
+
+        studentService.get(id);
+        studentService.get(id);
+
+        JsonNode after = statistics(CacheConfig.STUDENTS);
+        assertThat(after.get("size").asLong()).isEqualTo(1);
+        assertThat(after.get("hitCount").asLong()).isEqualTo(before.get("hitCount").asLong() + 1);
+        assertThat(after.get("missCount").asLong()).isEqualTo(before.get("missCount").asLong() + 1);
+        assertThat(after.get("hitRate").asDouble()).isBetween(0.0, 1.0);
+        assertThat(after.has("evictionCount")).isTrue();
+        assertThat(statistics(CacheConfig.FACULTIES).get("size").asLong()).isEqualTo(1);
+    }
+
+    private JsonNode statistics(String cacheName) {
+        ResponseEntity<JsonNode> response = testRestTemplate.getForEntity(
+                "http://localhost:" + port + "/cache/statistics", JsonNode.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        return StreamSupport.stream(response.getBody().spliterator(), false)
+                .filter(cache -> cache.get("name").asText().equals(cacheName))
+                .findFirst()
+                .orElseThrow();
+    }
+}
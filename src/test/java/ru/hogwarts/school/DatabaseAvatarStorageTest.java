@@ -0,0 +1,110 @@
+package ru.hogwarts.school;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.AvatarBlobRepository;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.AvatarStorage;
+import ru.hogwarts.school.service.Impl.DatabaseAvatarStorage;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "avatar.storage.type=database")
+public class DatabaseAvatarStorageTest {
+    @Autowired
+    private AvatarService avatarService;
+    @Autowired
+    private AvatarStorage storage;
+    @Autowired
+    private AvatarRepository avatarRepository;
+    @Autowired
+    private AvatarBlobRepository blobRepository;
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void afterEach() {
+        avatarRepository.deleteAll();
+        blobRepository.deleteAll();
+        studentRepository.deleteAll();
+        jdbcTemplate.update("delete from avatar_contents");
+    }
+
+    @Test
+    public void avatarContentLivesInTheDatabase() throws Exception {
+        Student harry = studentRepository.save(new Student(null, "Harry", 11));
+        Student ron = studentRepository.save(new Student(null, "Ron", 11));
+        byte[] first = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 1, 2, 3};
+        byte[] second = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 4, 5, 6};
+
+        avatarService.uploadAvatar(harry.getId(), file(first));
+        avatarService.uploadAvatar(ron.getId(), file(first));
+        String hash = avatarService.findAvatar(harry.getId()).getContentHash();
+
+        assertThat(storage).isInstanceOf(DatabaseAvatarStorage.class);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from avatar_contents", Integer.class)).isOne();
+        try (InputStream in = storage.find(hash).orElseThrow().openStream()) {
+            assertThat(in.readAllBytes()).isEqualTo(first);
+        }
+
+        avatarService.uploadAvatar(harry.getId(), file(second));
+        avatarService.uploadAvatar(ron.getId(), file(second));
+        assertThat(storage.exists(hash)).isFalse();
+        assertThat(jdbcTemplate.queryForObject("select count(*) from avatar_contents", Integer.class)).isOne();
+    }
+
+    // threads stand in for nodes: nothing but the database serialises them
+    @Test
+    public void concurrentUploadsOfNewContentAreAllCounted() throws Exception {
+        int uploads = 8;
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < uploads; i++) {
+            students.add(studentRepository.save(new Student(null, "Weasley " + i, 11)));
+        }
+        byte[] image = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 7, 7, 7};
+        ExecutorService executor = Executors.newFixedThreadPool(uploads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (Student student : students) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    avatarService.uploadAvatar(student.getId(), file(image));
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        String hash = avatarService.findAvatar(students.get(0).getId()).getContentHash();
+        assertThat(blobRepository.findById(hash).orElseThrow().getRefCount()).isEqualTo(uploads);
+        assertThat(storage.exists(hash)).isTrue();
+    }
+
+    private static MockMultipartFile file(byte[] content) {
+        return new MockMultipartFile("avatar", "avatar.png", "image/png", content);
+    }
+}
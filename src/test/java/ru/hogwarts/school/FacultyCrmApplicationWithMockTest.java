@@ -10,18 +10,27 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import ru.hogwarts.school.controller.FacultyController;
+import ru.hogwarts.school.dto.AutocompleteMode;
+import ru.hogwarts.school.dto.FacultyStatistics;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.FacultySearchService;
+import ru.hogwarts.school.service.FacultyCacheService;
+import ru.hogwarts.school.service.FacultyStatisticsService;
 import ru.hogwarts.school.service.Impl.FacultyServiceImpl;
 
+import javax.persistence.EntityManager;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.mockito.Mockito.times;
@@ -40,6 +49,21 @@ public class FacultyCrmApplicationWithMockTest {
     @MockBean
     private FacultyRepository facultyRepository;
 
+    @MockBean
+    private StudentRepository studentRepository;
+
+    @MockBean
+    private EntityManager entityManager;
+
+    @MockBean
+    private FacultySearchService searchService;
+
+    @MockBean
+    private FacultyStatisticsService statisticsService;
+
+    @MockBean
+    private FacultyCacheService facultyCacheService;
+
     @InjectMocks
     private FacultyController facultyController;
 
@@ -61,8 +85,12 @@ public class FacultyCrmApplicationWithMockTest {
 
         when(facultyRepository.save(ArgumentMatchers.any(Faculty.class))).thenReturn(testFaculty1);
         when(facultyRepository.findById(ArgumentMatchers.anyLong())).thenReturn(Optional.of(testFaculty1));
+        when(facultyRepository.existsById(1L)).thenReturn(true);
+        when(studentRepository.findByFacultyIdAndIdGreaterThanOrderByIdAsc(ArgumentMatchers.eq(1L),
+                ArgumentMatchers.eq(0L), ArgumentMatchers.any(Pageable.class))).thenReturn(List.of(testStudent1));
         ArrayList<Faculty> facultyArrayList1 = new ArrayList<>(List.of(testFaculty2, testFaculty3));
-        when(facultyRepository.findAll()).thenReturn(facultyArrayList1);
+        when(facultyRepository.findByIdGreaterThanOrderByIdAsc(ArgumentMatchers.eq(0L),
+                ArgumentMatchers.any(Pageable.class))).thenReturn(facultyArrayList1);
         when(facultyRepository.findByNameIgnoreCaseOrColorIgnoreCase(ArgumentMatchers.eq("Ravenclaw"),
                 ArgumentMatchers.eq("Green"))).thenReturn(facultyArrayList1);
     }
@@ -82,6 +110,57 @@ public class FacultyCrmApplicationWithMockTest {
         Mockito.verify(facultyRepository).save(ArgumentMatchers.any(Faculty.class));
     }
 
+    @Test
+    void postFacultyBatch() throws Exception {
+        List<Faculty> faculties = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            faculties.add(new Faculty(null, "Faculty" + i, "Blue"));
+        }
+        when(facultyRepository.saveAll(ArgumentMatchers.<List<Faculty>>any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/faculty/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(faculties))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$.length()").value(120))
+                .andExpect(jsonPath("$[119].name").value("Faculty119"));
+        // 120 rows with batch_size=50 are written in three chunks
+        Mockito.verify(facultyRepository, times(3)).saveAll(ArgumentMatchers.<List<Faculty>>any());
+        Mockito.verify(entityManager, times(3)).clear();
+    }
+
+    @Test
+    void autocompleteFaculty() throws Exception {
+        when(searchService.autocomplete("gry", AutocompleteMode.NAME, null)).thenReturn(List.of(testFaculty));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/faculty/autocomplete?prefix=gry&mode=NAME")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Gryffindor"));
+        Mockito.verify(facultyRepository, Mockito.never())
+                .findByNameIgnoreCaseOrColorIgnoreCase(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    @Test
+    void getFacultyStatistics() throws Exception {
+        when(statisticsService.getAll()).thenReturn(List.of(
+                new FacultyStatistics(1L, 3, 15.0, Map.of(14, 1L, 15, 1L, 16, 1L))));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/faculty/statistics")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("$[0].facultyId").value(1L))
+                .andExpect(jsonPath("$[0].students").value(3))
+                .andExpect(jsonPath("$[0].averageAge").value(15.0))
+                .andExpect(jsonPath("$[0].ageHistogram.15").value(1));
+        Mockito.verifyNoInteractions(studentRepository);
+    }
+
     @Test
     void getFaculty() throws Exception {
 
@@ -96,6 +175,19 @@ public class FacultyCrmApplicationWithMockTest {
 
     }
 
+    @Test
+    void patchFaculty() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .patch("/faculty/1")
+                        .contentType("application/merge-patch+json")
+                        .content("{\"color\":\"Scarlet\"}")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("name").value("Gryffindor"))
+                .andExpect(jsonPath("color").value("Scarlet"));
+        Mockito.verify(facultyRepository, Mockito.never()).save(ArgumentMatchers.any(Faculty.class));
+    }
+
     @Test
     void putFaculty() throws Exception {
 
@@ -115,6 +207,7 @@ public class FacultyCrmApplicationWithMockTest {
 
     @Test
     void deleteFaculty() throws Exception {
+        when(facultyRepository.deleteReturning(1L, null)).thenReturn(Optional.of(testFaculty));
 
         mockMvc.perform(MockMvcRequestBuilders
                         .delete("/faculty/1")
@@ -123,7 +216,10 @@ public class FacultyCrmApplicationWithMockTest {
                 .andExpect(jsonPath("id").value(1L))
                 .andExpect(jsonPath("name").value("Gryffindor"))
                 .andExpect(jsonPath("color").value("Red"));
-        Mockito.verify(facultyRepository).deleteById(ArgumentMatchers.anyLong());
+        Mockito.verify(facultyRepository).deleteReturning(1L, null);
+        Mockito.verify(facultyRepository, Mockito.never()).findById(ArgumentMatchers.anyLong());
+        Mockito.verify(facultyCacheService).evictFaculty(1L);
+        Mockito.verify(statisticsService).removeFaculty(1L);
 
     }
 
@@ -133,11 +229,21 @@ public class FacultyCrmApplicationWithMockTest {
                         .get("/faculty/students/1")
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.status().isOk())
-                .andExpect(jsonPath("$").isArray())
-                .andExpect(jsonPath("$[0]id").value(1L))
-                .andExpect(jsonPath("$[0]name").value("Harry"))
-                .andExpect(jsonPath("$[0]age").value(20));
-        Mockito.verify(facultyRepository).findById(ArgumentMatchers.anyLong());
+                .andExpect(jsonPath("items").isArray())
+                .andExpect(jsonPath("items[0]id").value(1L))
+                .andExpect(jsonPath("items[0]name").value("Harry"))
+                .andExpect(jsonPath("items[0]age").value(20));
+        Mockito.verify(studentRepository).findByFacultyIdAndIdGreaterThanOrderByIdAsc(ArgumentMatchers.eq(1L),
+                ArgumentMatchers.eq(0L), ArgumentMatchers.any(Pageable.class));
+        Mockito.verify(facultyRepository, Mockito.never()).findById(ArgumentMatchers.anyLong());
+    }
+
+    @Test
+    void getStudentsOfMissingFaculty() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/faculty/students/2")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
     }
 
 
@@ -149,16 +255,18 @@ public class FacultyCrmApplicationWithMockTest {
                         .get("/faculty/all?")
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.status().isOk())
-                .andExpect(jsonPath("$").isArray())
-
-                .andExpect(jsonPath("$[0]id").value(2L))
-                .andExpect(jsonPath("$[0]name").value("Slytherin"))
-                .andExpect(jsonPath("$[0]color").value("Green"))
-
-                .andExpect(jsonPath("$[1]id").value(3L))
-                .andExpect(jsonPath("$[1]name").value("Ravenclaw"))
-                .andExpect(jsonPath("$[1]color").value("Red"));
-        Mockito.verify(facultyRepository).findAll();
+                .andExpect(jsonPath("items").isArray())
+
+                .andExpect(jsonPath("items[0]id").value(2L))
+                .andExpect(jsonPath("items[0]name").value("Slytherin"))
+                .andExpect(jsonPath("items[0]color").value("Green"))
+
+                .andExpect(jsonPath("items[1]id").value(3L))
+                .andExpect(jsonPath("items[1]name").value("Ravenclaw"))
+                .andExpect(jsonPath("items[1]color").value("Red"))
+                .andExpect(jsonPath("next").doesNotExist());
+        Mockito.verify(facultyRepository).findByIdGreaterThanOrderByIdAsc(ArgumentMatchers.eq(0L),
+                ArgumentMatchers.any(Pageable.class));
 
     }
     @Test
@@ -0,0 +1,51 @@
+package ru.hogwarts.school;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FlywayBaselineTest {
+    private static final String URL = "jdbc:h2:mem:baseline;DB_CLOSE_DELAY=-1";
+
+    // a database ddl-auto created before Flyway, with an avatar still in the legacy data column
+    @Test
+    public void ddlAutoDatabaseIsBaselinedAndMigrated() throws Exception {
+        try (Connection connection = DriverManager.getConnection(URL, "test", "test");
+             Statement statement = connection.createStatement()) {
+            statement.execute("create table faculties (id bigint generated by default as identity, "
+                    + "name varchar(255), color varchar(255), primary key (id))");
+            statement.execute("create table students (id bigint generated by default as identity, "
+                    + "name varchar(255), age integer, faculty_id bigint, primary key (id))");
+            statement.execute("create table avatars (id bigint generated by default as identity, "
+                    + "file_path varchar(255), file_size bigint not null, media_type varchar(255), data bytea, "
+                    + "student_id bigint, primary key (id))");
+            statement.execute("insert into avatars (file_path, file_size, data) values ('avatars/1.png', 1, X'00')");
+        }
+
+        Flyway.configure()
+                .dataSource(URL, "test", "test")
+                .locations("classpath:db/migration/common")
+                .baselineOnMigrate(true)
+                .load()
+                .migrate();
+
+        try (Connection connection = DriverManager.getConnection(URL, "test", "test");
+             Statement statement = connection.createStatement();
+             ResultSet columns = statement.executeQuery("select column_name from information_schema.columns "
+                     + "where table_name = 'AVATARS'")) {
+            List<String> names = new ArrayList<>();
+            while (columns.next()) {
+                names.add(columns.getString(1));
+            }
+            assertThat(names).contains("CONTENT_HASH", "VERSION").doesNotContain("DATA");
+        }
+    }
+}
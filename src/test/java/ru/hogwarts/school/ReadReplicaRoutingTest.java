@@ -0,0 +1,120 @@
+package ru.hogwarts.school;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.hogwarts.school.config.ReadWriteRoutingDataSource;
+import ru.hogwarts.school.dto.AutocompleteMode;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentService;
+import ru.hogwarts.school.service.Impl.FacultySearchServiceImpl;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// the primary and the replica are two separate H2 databases, so a row tells which one answered
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary",
+        "datasource.replica.urls=" + ReadReplicaRoutingTest.REPLICA_URL + ";IFEXISTS=TRUE",
+        "datasource.replica.read-your-writes=PT0.5S",
+        "datasource.replica.connection-timeout=PT0.25S",
+        "datasource.replica.health-check-interval=PT1H"})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ReadReplicaRoutingTest {
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+    private static final int AGE = 77;
+
+    @Autowired
+    private StudentService studentService;
+    @Autowired
+    private FacultyService facultyService;
+    @Autowired
+    private FacultySearchServiceImpl facultySearchService;
+    @Autowired
+    private ReadWriteRoutingDataSource routingDataSource;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    public static void createReplica() throws Exception {
+        Flyway.configure()
+                .dataSource(REPLICA_URL, "test", "test")
+                .locations("classpath:db/migration/common")
+                .load()
+                .migrate();
+        try (Connection connection = DriverManager.getConnection(REPLICA_URL, "test", "test");
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("insert into students (id, name, age) "
+                    + "values (nextval('students_seq'), 'Replica Only', " + AGE + ")");
+        }
+    }
+
+    @Test
+    @Order(1)
+    public void readOnlyTransactionsGoToTheReplicaOutsideTheReadYourWritesWindow() throws Exception {
+        Thread.sleep(600);
+        assertThat(studentService.getByAge(AGE, AGE)).extracting(Student::getName).containsExactly("Replica Only");
+
+        studentService.add(new Student(null, "Primary Only", AGE));
+        assertThat(studentService.getByAge(AGE, AGE)).extracting(Student::getName).containsExactly("Primary Only");
+
+        Thread.sleep(600);
+        assertThat(studentService.getByAge(AGE, AGE)).extracting(Student::getName).containsExactly("Replica Only");
+    }
+
+    @Test
+    @Order(2)
+    public void readsOutsideTransactionsDoNotPinTrafficToThePrimary() throws Exception {
+        Thread.sleep(600);
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from students where age = ?", Integer.class, AGE))
+                .isOne();
+        // what the actuator health check does
+        try (Connection connection = dataSource.getConnection()) {
+            assertThat(connection.isValid(1)).isTrue();
+        }
+        assertThat(studentService.getByAge(AGE, AGE)).extracting(Student::getName).containsExactly("Replica Only");
+    }
+
+    @Test
+    @Order(3)
+    public void facultyIndexIsRebuiltFromThePrimary() throws Exception {
+        facultyService.add(new Faculty(null, "Primary Hall", "Grey"));
+        Thread.sleep(600);
+
+        facultySearchService.rebuild();
+
+        assertThat(facultySearchService.autocomplete("Primary", AutocompleteMode.NAME, null))
+                .extracting(Faculty::getName).containsExactly("Primary Hall");
+    }
+
+    @Test
+    @Order(4)
+    public void readsFallBackToThePrimaryWhenTheReplicaIsDown() throws Exception {
+        try (Connection connection = DriverManager.getConnection(REPLICA_URL, "test", "test");
+             Statement statement = connection.createStatement()) {
+            statement.execute("shutdown");
+        }
+        Thread.sleep(600);
+
+        assertThat(studentService.getByAge(AGE, AGE)).extracting(Student::getName).containsExactly("Primary Only");
+        assertThat(routingDataSource.isHealthy("replica-0")).isFalse();
+
+        routingDataSource.checkReplicas();
+        assertThat(routingDataSource.isHealthy("replica-0")).isFalse();
+    }
+}
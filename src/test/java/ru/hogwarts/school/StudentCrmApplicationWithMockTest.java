@@ -13,24 +13,37 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import ru.hogwarts.school.controller.StudentController;
+import ru.hogwarts.school.dto.CursorPage;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.AvatarReclaimService;
+import ru.hogwarts.school.service.FacultyStatisticsService;
 import ru.hogwarts.school.service.Impl.StudentServiceImpl;
+import ru.hogwarts.school.service.StudentSearchService;
 
+import javax.persistence.EntityManager;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(StudentController.class)
@@ -42,6 +55,14 @@ public class StudentCrmApplicationWithMockTest {
 
     @MockBean
     private StudentRepository studentRepository;
+    @MockBean
+    private EntityManager entityManager;
+    @MockBean
+    private StudentSearchService searchService;
+    @MockBean
+    private FacultyStatisticsService statisticsService;
+    @MockBean
+    private AvatarReclaimService avatarReclaimService;
     @InjectMocks
     private StudentController studentController;
 
@@ -64,7 +85,9 @@ public class StudentCrmApplicationWithMockTest {
         when(studentRepository.save(ArgumentMatchers.any(Student.class))).thenReturn(testStudent1);
         when(studentRepository.findById(ArgumentMatchers.any(Long.class))).thenReturn(Optional.of(testStudent1));
         ArrayList<Student> studentArrayList1 = new ArrayList<>(List.of(testStudent2, testStudent3));
-        when(studentRepository.findAll()).thenReturn(studentArrayList1);
+        when(studentRepository.findByIdGreaterThanOrderByIdAsc(ArgumentMatchers.eq(0L), any(Pageable.class)))
+                .thenReturn(studentArrayList1);
+        when(studentRepository.streamAllBy()).thenReturn(Stream.of(testStudent2, testStudent3));
         when(studentRepository.findByAgeBetween(ArgumentMatchers.eq(16), ArgumentMatchers.eq(21)))
                 .thenReturn(studentArrayList1);
 
@@ -87,6 +110,74 @@ public class StudentCrmApplicationWithMockTest {
 
 
 
+    @Test
+    void postStudentBatch() throws Exception {
+        Student first = new Student(7L, "Neville", 15);
+        Student second = new Student(null, "Luna", 14);
+        when(studentRepository.saveAll(ArgumentMatchers.<List<Student>>any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/student/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(first, second)))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").doesNotExist())
+                .andExpect(jsonPath("$[0].name").value("Neville"))
+                .andExpect(jsonPath("$[1].name").value("Luna"));
+        Mockito.verify(studentRepository, Mockito.never()).findAllById(any());
+        Mockito.verify(entityManager).flush();
+        Mockito.verify(entityManager).clear();
+    }
+
+    @Test
+    void putStudentBatch() throws Exception {
+        when(studentRepository.saveAll(ArgumentMatchers.<List<Student>>any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(studentRepository.findAllById(List.of(1L))).thenReturn(List.of(testStudent));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .put("/student/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(testStudent)))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1L))
+                .andExpect(jsonPath("$[0].name").value("Harry"));
+        Mockito.verify(studentRepository).findAllById(List.of(1L));
+    }
+
+    @Test
+    void searchStudents() throws Exception {
+        CursorPage<Student> page = new CursorPage<>();
+        page.setItems(List.of(testStudent));
+        page.setNext(1L);
+        when(searchService.search("har", null, 1)).thenReturn(page);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/student/search?q=har&limit=1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("items[0].name").value("Harry"))
+                .andExpect(jsonPath("next").value(1));
+        Mockito.verify(studentRepository, Mockito.never()).findAll();
+    }
+
+    @Test
+    void searchRejectsShortQueriesNegativeCursorsAndEmptyLimits() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/student/search?q=ha"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get("/student/search?q="))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get("/student/search?q=har&after=-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get("/student/search?q=har&limit=0"))
+                .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(searchService);
+    }
+
     @Test
     void getingStudent() throws Exception {
         mockMvc.perform(MockMvcRequestBuilders
@@ -100,6 +191,52 @@ public class StudentCrmApplicationWithMockTest {
 
     }
 
+    @Test
+    void patchStudent() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .patch("/student/1")
+                        .contentType("application/merge-patch+json")
+                        .content("{\"age\":16,\"name\":null}")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("id").value(1L))
+                .andExpect(jsonPath("name").doesNotExist())
+                .andExpect(jsonPath("age").value(16));
+        Mockito.verify(studentRepository, Mockito.never()).save(any(Student.class));
+        Mockito.verify(studentRepository).flush();
+    }
+
+    @Test
+    void patchStudentRejectsAnotherId() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .patch("/student/1")
+                        .contentType("application/merge-patch+json")
+                        .content("{\"id\":2,\"age\":16}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders
+                        .patch("/student/1")
+                        .contentType("application/merge-patch+json")
+                        .content("[{\"op\":\"replace\",\"path\":\"/age\",\"value\":16}]"))
+                .andExpect(status().isBadRequest());
+        Mockito.verify(studentRepository, Mockito.never()).flush();
+    }
+
+    @Test
+    void patchStudentRejectsMembersItCannotChange() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .patch("/student/1")
+                        .contentType("application/merge-patch+json")
+                        .content("{\"age\":16,\"agge\":17}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders
+                        .patch("/student/1")
+                        .contentType("application/merge-patch+json")
+                        .content("{\"faculty\":{\"id\":2}}"))
+                .andExpect(status().isBadRequest());
+        assertThat(testStudent.getAge()).isEqualTo(15);
+        Mockito.verify(studentRepository, Mockito.never()).flush();
+    }
+
     @Test
     void putStudent() throws Exception {
         mockMvc.perform(MockMvcRequestBuilders
@@ -117,6 +254,8 @@ public class StudentCrmApplicationWithMockTest {
 
     @Test
     void deleteStudent() throws Exception {
+        when(studentRepository.deleteReturning(1L, null)).thenReturn(Optional.of(testStudent));
+
         mockMvc.perform(MockMvcRequestBuilders
                         .delete("/student/1")
                         .accept(MediaType.APPLICATION_JSON))
@@ -124,8 +263,26 @@ public class StudentCrmApplicationWithMockTest {
                 .andExpect(jsonPath("id").value(1L))
                 .andExpect(jsonPath("name").value("Harry"))
                 .andExpect(jsonPath("age").value(15));
-        Mockito.verify(studentRepository).deleteById(ArgumentMatchers.anyLong());
+        Mockito.verify(studentRepository).deleteReturning(1L, null);
+        Mockito.verify(studentRepository, Mockito.never()).findById(ArgumentMatchers.anyLong());
+        Mockito.verify(avatarReclaimService).detachStudents(List.of(1L));
+
+    }
 
+    @Test
+    void deleteStudents() throws Exception {
+        when(studentRepository.deleteAllReturning(List.of(1L, 2L, 3L)))
+                .thenReturn(List.of(testStudent, new Student(2L, "Hermione", 18)));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .delete("/student?ids=1,2,3")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].name").value("Hermione"));
+        Mockito.verify(avatarReclaimService).detachStudents(List.of(1L, 2L, 3L));
+        Mockito.verify(searchService).remove(2L);
+        Mockito.verify(statisticsService).remove(2L);
     }
 
     @Test
@@ -147,17 +304,45 @@ public class StudentCrmApplicationWithMockTest {
                         .get("/student/all?")
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.status().isOk())
-                .andExpect(jsonPath("$").isArray())
+                .andExpect(jsonPath("items").isArray())
 
-                .andExpect(jsonPath("$[0]id").value(2L))
-                .andExpect(jsonPath("$[0]name").value("Hermione"))
-                .andExpect(jsonPath("$[0]age").value(18))
+                .andExpect(jsonPath("items[0]id").value(2L))
+                .andExpect(jsonPath("items[0]name").value("Hermione"))
+                .andExpect(jsonPath("items[0]age").value(18))
 
-                .andExpect(jsonPath("$[1]id").value(3L))
-                .andExpect(jsonPath("$[1]name").value("Ron"))
-                .andExpect(jsonPath("$[1]age").value(20));
-        Mockito.verify(studentRepository).findAll();
+                .andExpect(jsonPath("items[1]id").value(3L))
+                .andExpect(jsonPath("items[1]name").value("Ron"))
+                .andExpect(jsonPath("items[1]age").value(20))
+                .andExpect(jsonPath("next").doesNotExist());
+        Mockito.verify(studentRepository).findByIdGreaterThanOrderByIdAsc(ArgumentMatchers.eq(0L), any(Pageable.class));
+
+    }
+
+    @Test
+    void getAllStudentsReturnsNextCursor() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/student/all?limit=1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(jsonPath("items.length()").value(1))
+                .andExpect(jsonPath("items[0]id").value(2L))
+                .andExpect(jsonPath("next").value(2L));
+        Mockito.verify(studentRepository).findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 2));
+    }
 
+    @Test
+    void exportStudents() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders
+                        .get("/student/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string("{\"id\":2,\"name\":\"Hermione\",\"age\":18}\n"
+                        + "{\"id\":3,\"name\":\"Ron\",\"age\":20}\n"));
+        Mockito.verify(entityManager, times(2)).detach(any(Student.class));
     }
 
     @Test
@@ -1,27 +1,49 @@
 package ru.hogwarts.school;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.jcache.configuration.TypesafeConfigurator;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import net.datafaker.Faker;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import ru.hogwarts.school.config.CacheConfig;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultyStatistics;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.FacultyRepository;
 import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.FacultyStatisticsService;
+import ru.hogwarts.school.service.StudentService;
 
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
 import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMetrics
 
 public class TestApplicationWithTestRemplate {
     @LocalServerPort
@@ -33,6 +55,16 @@ public class TestApplicationWithTestRemplate {
     private StudentRepository studentRepository;
     @Autowired
     private FacultyRepository facultyRepository;
+    @Autowired
+    private StudentService studentService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private FacultyStatisticsService statisticsService;
+    @Autowired
+    private FacultyService facultyService;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
 
     private final Faker faker = new Faker();
     private List<Student> students = new ArrayList<>(10);
@@ -97,7 +129,7 @@ public class TestApplicationWithTestRemplate {
         assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(responseEntity.getBody()).isNotNull();
         assertThat(responseEntity.getBody()).usingRecursiveComparison()
-                .ignoringFields("id")
+                .ignoringFields("id", "version")
                 .isEqualTo(student);
         assertThat(responseEntity.getBody().getId()).isNotNull();
 
@@ -130,6 +162,105 @@ public class TestApplicationWithTestRemplate {
 
     }
 
+    @Test
+    public void createAndUpdateStudentsInBatch() {
+        List<Student> batch = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            Student student = new Student();
+            student.setName(faker.harryPotter().character());
+            student.setAge(faker.random().nextInt(11, 18));
+            batch.add(student);
+        }
+
+        ResponseEntity<List<Student>> created = testRestTemplate.exchange(buildUrl("/student/batch"),
+                HttpMethod.POST, new HttpEntity<>(batch), new ParameterizedTypeReference<>() {
+                });
+
+        assertThat(created.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(created.getBody()).hasSize(120)
+                .allSatisfy(student -> assertThat(student.getId()).isNotNull());
+        assertThat(created.getBody()).usingRecursiveFieldByFieldElementComparatorIgnoringFields("id", "version")
+                .containsExactlyElementsOf(batch);
+
+        List<Student> toUpdate = created.getBody();
+        toUpdate.forEach(student -> student.setAge(19));
+        ResponseEntity<List<Student>> updated = testRestTemplate.exchange(buildUrl("/student/batch"),
+                HttpMethod.PUT, new HttpEntity<>(toUpdate), new ParameterizedTypeReference<>() {
+                });
+
+        assertThat(updated.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(studentRepository.findAllById(toUpdate.stream().map(Student::getId).toList()))
+                .hasSize(120)
+                .allSatisfy(student -> assertThat(student.getAge()).isEqualTo(19));
+    }
+
+    @Test
+    public void searchStudentsByNameSubstring() {
+        List<Student> batch = new ArrayList<>();
+        for (String name : List.of("Zyxwik Quorbel", "Quorbel", "Professor Quorbel", "Hermione Granger")) {
+            Student student = new Student();
+            student.setName(name);
+            student.setAge(30);
+            batch.add(student);
+        }
+        List<Student> created = testRestTemplate.exchange(buildUrl("/student/batch"), HttpMethod.POST,
+                new HttpEntity<>(batch), new ParameterizedTypeReference<List<Student>>() {
+                }).getBody();
+        assertThat(created).hasSize(4);
+
+        ResponseEntity<CursorPage<Student>> firstPage = testRestTemplate.exchange(
+                buildUrl("/student/search?q=QUORBEL&limit=2"), HttpMethod.GET, null,
+                new ParameterizedTypeReference<>() {
+                });
+        assertThat(firstPage.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(firstPage.getBody().getItems()).extracting(Student::getName)
+                .containsExactly("Quorbel", "Zyxwik Quorbel");
+        assertThat(firstPage.getBody().getNext()).isNotNull();
+
+        // a student matching ahead of the cursor does not shift the second page
+        testRestTemplate.postForObject(buildUrl("/student"), new Student(null, "Quorbelle", 30), Student.class);
+        CursorPage<Student> secondPage = testRestTemplate.exchange(
+                buildUrl("/student/search?q=QUORBEL&limit=2&after=" + firstPage.getBody().getNext()),
+                HttpMethod.GET, null,
+                new ParameterizedTypeReference<CursorPage<Student>>() {
+                }).getBody();
+        assertThat(secondPage.getItems()).extracting(Student::getName).containsExactly("Professor Quorbel");
+        assertThat(secondPage.getNext()).isNull();
+
+        testRestTemplate.delete(buildUrl("/student/" + created.get(1).getId()));
+        CursorPage<Student> afterDelete = testRestTemplate.exchange(
+                buildUrl("/student/search?q=orbel"), HttpMethod.GET, null,
+                new ParameterizedTypeReference<CursorPage<Student>>() {
+                }).getBody();
+        assertThat(afterDelete.getItems()).extracting(Student::getName)
+                .containsExactly("Quorbelle", "Zyxwik Quorbel", "Professor Quorbel");
+
+        ResponseEntity<String> tooShort = testRestTemplate.getForEntity(buildUrl("/student/search?q=Qu"), String.class);
+        assertThat(tooShort.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void prometheusScrape() {
+        Long id = students.get(0).getId();
+        testRestTemplate.getForEntity(buildUrl("/student/" + id), Student.class);
+        testRestTemplate.getForEntity(buildUrl("/student/" + id), Student.class);
+
+        ResponseEntity<String> scrape = testRestTemplate.getForEntity(buildUrl("/actuator/prometheus"), String.class);
+
+        assertThat(scrape.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(scrape.getBody())
+                .contains("http_server_requests_seconds_bucket{", "uri=\"/student/{id}\"")
+                .contains("http_server_requests_seconds{", "quantile=\"0.99\"")
+                .contains("school_service_seconds_count{", "class=\"ru.hogwarts.school.service.Impl.StudentServiceImpl\"")
+                .contains("spring_data_repository_invocations_seconds_count{", "repository=\"StudentRepository\"")
+                .contains("hikaricp_connections_pending{", "hikaricp_connections_active{")
+                .contains("cache_gets_total{", "cache=\"students\"", "cache=\"avatar-contents\"")
+                .contains("avatar_cache_bytes{")
+                .contains("hibernate_statements_total{")
+                .contains("hibernate_second_level_cache_requests_total{", "region=\"faculty\"")
+                .contains("avatar_upload_bytes_total{", "avatar_download_bytes_total{");
+    }
+
     private void assertWatResponseEntityIsCorrect(ResponseEntity<Student> responseEntity, Student student) {
         assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(responseEntity.getBody()).isNotNull();
@@ -137,6 +268,99 @@ public class TestApplicationWithTestRemplate {
         assertThat(responseEntity.getBody().getAge()).isEqualTo(student.getAge());
     }
 
+    @Test
+    public void conditionalGetAndUpdateOfStudent() {
+        Student student = studentRepository.save(new Student(null, "Zacharias Smith", 14));
+        String url = buildUrl("/student/" + student.getId());
+
+        ResponseEntity<Student> first = testRestTemplate.getForEntity(url, Student.class);
+        String etag = first.getHeaders().getETag();
+        assertThat(etag).isEqualTo("\"0\"");
+
+        HttpHeaders ifNoneMatch = new HttpHeaders();
+        ifNoneMatch.setIfNoneMatch(etag);
+        ResponseEntity<String> notModified = testRestTemplate.exchange(url, HttpMethod.GET,
+                new HttpEntity<>(ifNoneMatch), String.class);
+        assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(notModified.getBody()).isNull();
+
+        HttpHeaders ifMatch = new HttpHeaders();
+        ifMatch.setIfMatch(etag);
+        student.setAge(15);
+        ResponseEntity<Student> updated = testRestTemplate.exchange(buildUrl("/student"), HttpMethod.PUT,
+                new HttpEntity<>(student, ifMatch), Student.class);
+        assertThat(updated.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(updated.getHeaders().getETag()).isEqualTo("\"1\"");
+        assertThat(updated.getBody().getVersion()).isEqualTo(1L);
+
+        // a second writer still holding version 0 must not overwrite the first one
+        student.setAge(16);
+        ResponseEntity<String> stale = testRestTemplate.exchange(buildUrl("/student"), HttpMethod.PUT,
+                new HttpEntity<>(student, ifMatch), String.class);
+        assertThat(stale.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        assertThat(testRestTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(ifNoneMatch), String.class)
+                .getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        ResponseEntity<String> staleDelete = testRestTemplate.exchange(url, HttpMethod.DELETE,
+                new HttpEntity<>(ifMatch), String.class);
+        assertThat(staleDelete.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        assertThat(studentRepository.findById(student.getId()).orElseThrow().getAge()).isEqualTo(15);
+
+        ifMatch.setIfMatch("\"1\"");
+        ResponseEntity<String> deleted = testRestTemplate.exchange(url, HttpMethod.DELETE,
+                new HttpEntity<>(ifMatch), String.class);
+        assertThat(deleted.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(studentRepository.findById(student.getId())).isEmpty();
+    }
+
+    @Test
+    public void putWithoutIdCreates() {
+        ResponseEntity<Student> student = testRestTemplate.exchange(buildUrl("/student"), HttpMethod.PUT,
+                new HttpEntity<>(new Student(null, "Justin Finch-Fletchley", 12)), Student.class);
+        assertThat(student.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(studentRepository.findById(student.getBody().getId())).isPresent();
+
+        ResponseEntity<Faculty> faculty = testRestTemplate.exchange(buildUrl("/faculty"), HttpMethod.PUT,
+                new HttpEntity<>(new Faculty(null, "Eastwing", "Teal")), Faculty.class);
+        assertThat(faculty.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(facultyRepository.findById(faculty.getBody().getId())).isPresent();
+    }
+
+    @Test
+    public void searchReturnsTheVersionOfTheETag() {
+        Student student = testRestTemplate.postForObject(buildUrl("/student"),
+                new Student(null, "Ernie Macmillan", 14), Student.class);
+        student.setAge(15);
+
+        ResponseEntity<Student> updated = testRestTemplate.exchange(buildUrl("/student"), HttpMethod.PUT,
+                new HttpEntity<>(student), Student.class);
+        assertThat(updated.getHeaders().getETag()).isEqualTo("\"1\"");
+
+        CursorPage<Student> found = testRestTemplate.exchange(
+                buildUrl("/student/search?q=Ernie Macmillan"), HttpMethod.GET, null,
+                new ParameterizedTypeReference<CursorPage<Student>>() {
+                }).getBody();
+        assertThat(found.getItems()).filteredOn(Student::getId, student.getId())
+                .extracting(Student::getAge, Student::getVersion).containsExactly(tuple(15, 1L));
+    }
+
+    @Test
+    public void patchStudentKeepsUntouchedFields() throws Exception {
+        Student student = studentRepository.save(new Student(null, "Hannah Abbott", 12));
+
+        Student patched = studentService.patch(student.getId(), objectMapper.readTree("{\"age\":13}"), null);
+
+        assertThat(patched.getVersion()).isEqualTo(1L);
+        Student fromDb = studentRepository.findById(student.getId()).orElseThrow();
+        assertThat(fromDb.getName()).isEqualTo("Hannah Abbott");
+        assertThat(fromDb.getAge()).isEqualTo(13);
+        assertThat(fromDb.getVersion()).isEqualTo(1L);
+
+        assertThatThrownBy(() -> studentService.patch(student.getId(), objectMapper.readTree("{\"age\":14}"), 0L))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(studentRepository.findById(student.getId()).orElseThrow().getAge()).isEqualTo(13);
+    }
+
     @Test
     public void deleteStudent() {
         Student student = new Student();
@@ -153,6 +377,21 @@ public class TestApplicationWithTestRemplate {
 
     }
 
+    @Test
+    public void deleteStudentsInBulk() {
+        List<Long> ids = students.subList(0, 3).stream().map(Student::getId).toList();
+
+        ResponseEntity<List<Student>> responseEntity = testRestTemplate.exchange(
+                buildUrl("/student?ids=" + ids.get(0) + "," + ids.get(1) + "," + ids.get(2) + ",-1"),
+                HttpMethod.DELETE, null, new ParameterizedTypeReference<>() {
+                });
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(responseEntity.getBody()).extracting(Student::getId).containsExactlyInAnyOrderElementsOf(ids);
+        assertThat(studentRepository.findAllById(ids)).isEmpty();
+        assertThat(studentRepository.count()).isEqualTo(students.size() - 3);
+    }
+
     @Test
     public void getStudentById() {
         Student student = new Student();
@@ -206,19 +445,69 @@ public class TestApplicationWithTestRemplate {
         Student save = studentRepository.save(student);
 
 
-        ResponseEntity<Collection<Student>> responseEntity = testRestTemplate.exchange(buildUrl(
+        ResponseEntity<CursorPage<Student>> responseEntity = testRestTemplate.exchange(buildUrl(
                         "/student/all?"),
                 HttpMethod.GET,
                 null,
-                new ParameterizedTypeReference<Collection<Student>>() {
+                new ParameterizedTypeReference<CursorPage<Student>>() {
                 }
         );
-        Collection<Student> actual = responseEntity.getBody();
+        CursorPage<Student> actual = responseEntity.getBody();
 
         assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(actual).isNotNull();
+        // other tests leave rows behind, so the new one is not necessarily on the first page
+        assertThat(allPages("/student/all", actual, new ParameterizedTypeReference<CursorPage<Student>>() {
+        })).contains(save);
+
+
+    }
+
+    @Test
+    public void exportStudents() {
+        ResponseEntity<String> responseEntity = testRestTemplate.getForEntity(buildUrl(
+                        "/student/export"),
+                String.class
+        );
 
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(responseEntity.getBody()).isNotNull();
+        assertThat(responseEntity.getBody().lines()).hasSize(students.size());
+    }
 
+    @Test
+    public void getFacultyOfStudent() {
+        Student student = students.get(0);
+
+        ResponseEntity<Faculty> responseEntity = testRestTemplate.getForEntity(buildUrl(
+                        "/student/faculty/" + student.getId()),
+                Faculty.class
+        );
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(responseEntity.getBody()).isEqualTo(student.getFaculty());
+    }
+
+    @Test
+    public void getStudentsOfFaculty() {
+        Faculty faculty = students.get(0).getFaculty();
+        List<Student> expected = students.stream()
+                .filter(student -> student.getFaculty().equals(faculty))
+                .toList();
+
+        ResponseEntity<CursorPage<Student>> responseEntity = testRestTemplate.exchange(buildUrl(
+                        "/faculty/students/{id}?limit={limit}"),
+                HttpMethod.GET,
+                null,
+                new ParameterizedTypeReference<CursorPage<Student>>() {
+                },
+                Map.of("id", faculty.getId(), "limit", expected.size())
+        );
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(responseEntity.getBody()).isNotNull();
+        assertThat(responseEntity.getBody().getItems()).containsExactlyElementsOf(expected);
+        assertThat(responseEntity.getBody().getNext()).isNull();
     }
 
     @Test
@@ -268,6 +557,103 @@ public class TestApplicationWithTestRemplate {
         assertThat(fromDb.get()).isEqualTo(responseEntity.getBody());
     }
 
+    @Test
+    public void autocompleteFaculty() {
+        List<Faculty> batch = List.of(new Faculty(null, "Zylonia", "Azure"),
+                new Faculty(null, "Azkabanites", "Zinc"),
+                new Faculty(null, "Zymurgy", "Gray"));
+        List<Faculty> created = testRestTemplate.exchange(buildUrl("/faculty/batch"), HttpMethod.POST,
+                new HttpEntity<>(batch), new ParameterizedTypeReference<List<Faculty>>() {
+                }).getBody();
+        assertThat(created).hasSize(3);
+
+        assertThat(autocomplete("zy", "NAME")).containsExactly("Zylonia", "Zymurgy");
+        assertThat(autocomplete("ZI", "COLOR")).containsExactly("Azkabanites");
+        assertThat(autocomplete("z", "ALL")).containsExactly("Zylonia", "Zymurgy", "Azkabanites");
+
+        testRestTemplate.delete(buildUrl("/faculty/" + created.get(0).getId()));
+        assertThat(autocomplete("zy", "NAME")).containsExactly("Zymurgy");
+    }
+
+    private List<String> autocomplete(String prefix, String mode) {
+        ResponseEntity<List<Faculty>> response = testRestTemplate.exchange(
+                buildUrl("/faculty/autocomplete?prefix=" + prefix + "&mode=" + mode), HttpMethod.GET, null,
+                new ParameterizedTypeReference<>() {
+                });
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        return response.getBody().stream().map(Faculty::getName).toList();
+    }
+
+    @Test
+    public void facultyStatistics() {
+        statisticsService.reconcile();
+        Faculty faculty = students.get(0).getFaculty();
+        List<Student> roster = students.stream()
+                .filter(student -> student.getFaculty().equals(faculty))
+                .toList();
+
+        FacultyStatistics reconciled = facultyStatistics(faculty.getId());
+        assertThat(reconciled.getStudents()).isEqualTo(roster.size());
+        assertThat(reconciled.getAverageAge()).isEqualTo(
+                roster.stream().mapToInt(Student::getAge).average().orElseThrow());
+        assertThat(reconciled.getAgeHistogram().values().stream().mapToLong(Long::longValue).sum())
+                .isEqualTo(roster.size());
+
+        Student newcomer = new Student(null, faker.harryPotter().character(), 40);
+        newcomer.setFaculty(faculty);
+        Student added = studentService.add(newcomer);
+        assertThat(facultyStatistics(faculty.getId()).getStudents()).isEqualTo(roster.size() + 1);
+        assertThat(facultyStatistics(faculty.getId()).getAgeHistogram()).containsEntry(40, 1L);
+
+        studentService.remove(added.getId());
+        FacultyStatistics afterRemove = facultyStatistics(faculty.getId());
+        assertThat(afterRemove.getStudents()).isEqualTo(roster.size());
+        assertThat(afterRemove.getAgeHistogram()).doesNotContainKey(40);
+        assertThat(afterRemove.getAverageAge()).isEqualTo(reconciled.getAverageAge());
+    }
+
+    @Test
+    public void facultyWithoutStudentsHasEmptyStatistics() {
+        Faculty empty = createFaculty();
+
+        FacultyStatistics statistics = facultyStatistics(empty.getId());
+        assertThat(statistics.getStudents()).isZero();
+        assertThat(statistics.getAverageAge()).isNull();
+        assertThat(statistics.getAgeHistogram()).isEmpty();
+
+        Student transfer = new Student(null, faker.harryPotter().character(), 12);
+        transfer.setFaculty(empty);
+        studentService.remove(studentService.add(transfer).getId());
+        statisticsService.reconcile();
+        assertThat(facultyStatistics(empty.getId()).getStudents()).isZero();
+
+        facultyService.remove(empty.getId());
+        assertThat(testRestTemplate.getForEntity(buildUrl("/faculty/statistics/" + empty.getId()), String.class)
+                .getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+        ResponseEntity<String> missing = testRestTemplate.getForEntity(
+                buildUrl("/faculty/statistics/" + Long.MAX_VALUE), String.class);
+        assertThat(missing.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    private <T> List<T> allPages(String path, CursorPage<T> first, ParameterizedTypeReference<CursorPage<T>> type) {
+        List<T> items = new ArrayList<>(first.getItems());
+        for (Long next = first.getNext(); next != null; ) {
+            CursorPage<T> page = testRestTemplate.exchange(buildUrl(path + "?after=" + next), HttpMethod.GET, null, type)
+                    .getBody();
+            items.addAll(page.getItems());
+            next = page.getNext();
+        }
+        return items;
+    }
+
+    private FacultyStatistics facultyStatistics(Long facultyId) {
+        ResponseEntity<FacultyStatistics> response = testRestTemplate.getForEntity(
+                buildUrl("/faculty/statistics/" + facultyId), FacultyStatistics.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        return response.getBody();
+    }
+
     @Test
     public void updateFaculty() {
         Faculty faculty = new Faculty();
@@ -291,6 +677,49 @@ public class TestApplicationWithTestRemplate {
     }
 
 
+    @Test
+    public void facultyReadsAreServedFromSecondLevelCache() {
+        Faculty faculty = createFaculty();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        CacheRegionStatistics entities = statistics.getDomainDataRegionStatistics(CacheConfig.FACULTY_REGION);
+        CacheRegionStatistics queries = statistics.getQueryRegionStatistics(CacheConfig.FACULTY_QUERY_REGION);
+        long entityHits = entities.getHitCount();
+        long queryHits = queries.getHitCount();
+
+        facultyRepository.findById(faculty.getId());
+        facultyRepository.findById(faculty.getId());
+        facultyRepository.findByNameIgnoreCaseOrColorIgnoreCase(faculty.getName(), null);
+        Collection<Faculty> found = facultyRepository.findByNameIgnoreCaseOrColorIgnoreCase(faculty.getName(), null);
+
+        assertThat(entities.getHitCount()).isGreaterThanOrEqualTo(entityHits + 2);
+        assertThat(queries.getHitCount()).isGreaterThan(queryHits);
+        assertThat(found).contains(faculty);
+
+        // the delete is plain JDBC, so only the explicit eviction keeps the regions from serving the row
+        facultyService.remove(faculty.getId());
+        assertThat(facultyRepository.findById(faculty.getId())).isEmpty();
+        assertThat(facultyRepository.findByNameIgnoreCaseOrColorIgnoreCase(faculty.getName(), null))
+                .doesNotContain(faculty);
+    }
+
+    @Test
+    public void secondLevelCacheRegionsExpire() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        // the rosters hold student ids only, students are no cached entity
+        assertThat(statistics.getSecondLevelCacheRegionNames())
+                .contains(CacheConfig.FACULTY_REGION, CacheConfig.FACULTY_QUERY_REGION)
+                .doesNotContain("faculty-students");
+
+        Config config = ConfigFactory.load();
+        for (String region : List.of(CacheConfig.FACULTY_REGION, CacheConfig.FACULTY_QUERY_REGION,
+                "default-query-results-region")) {
+            assertThat(TypesafeConfigurator.from(config, region).orElseThrow().getExpireAfterWrite())
+                    .as(region).hasValue(Duration.ofMinutes(10).toNanos());
+        }
+        assertThat(TypesafeConfigurator.from(config, "default-update-timestamps-region").orElseThrow()
+                .getExpireAfterWrite()).isEmpty();
+    }
+
     @Test
     public void deleteFaculty() {
         Faculty faculty = new Faculty();
@@ -357,17 +786,20 @@ public class TestApplicationWithTestRemplate {
         faculty.setColor(faker.color().name());
         Faculty save = facultyRepository.save(faculty);
 
-        ResponseEntity<Collection<Faculty>> responseEntity = testRestTemplate.exchange(buildUrl(
+        ResponseEntity<CursorPage<Faculty>> responseEntity = testRestTemplate.exchange(buildUrl(
                         "/faculty/all?"),
                 HttpMethod.GET,
                 null,
-                new ParameterizedTypeReference<Collection<Faculty>>() {
+                new ParameterizedTypeReference<CursorPage<Faculty>>() {
                 }
         );
-        Collection<Faculty> actual = responseEntity.getBody();
+        CursorPage<Faculty> actual = responseEntity.getBody();
 
         assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(actual).isNotNull();
+        // other tests leave rows behind, so the new one is not necessarily on the first page
+        assertThat(allPages("/faculty/all", actual, new ParameterizedTypeReference<CursorPage<Faculty>>() {
+        })).contains(save);
     }
 
     @Test